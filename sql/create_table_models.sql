@@ -1 +1 @@
-create table models (id int(4) NOT NULL AUTO_INCREMENT, trial int(4), modelId int(2), L int(12), H int(12), dH int(12), x decimal(5,4), p_diff decimal(5,4), l_0 decimal(7,4), alpha decimal(18,2), beta decimal(18,2), beta_avg decimal(18,2), R2 decimal(7,1), lnw_avg decimal(16,13), w decimal(16,10), h_avg int(12), t int(16), t_0 int(16), t_x1 int(16), t_x2 int(16), PRIMARY KEY(id));
\ No newline at end of file
+create table models (id int(4) NOT NULL AUTO_INCREMENT, trial int(4), modelId int(2), L int(12), H int(12), dH int(12), x decimal(5,4), p_diff decimal(5,4), l_0 decimal(7,4), alpha decimal(18,2), beta decimal(18,2), beta_avg decimal(18,2), R2 decimal(7,1), lnw_avg decimal(16,13), w decimal(16,10), h_avg int(12), t int(16), t_0 int(16), t_x1 int(16), t_x2 int(16), seed bigint(16), PRIMARY KEY(id));
\ No newline at end of file
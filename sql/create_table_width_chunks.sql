@@ -0,0 +1,8 @@
+CREATE TABLE width_chunks (
+ series int(12),
+ chunk bigint(16),
+ codec tinyint(2),
+ n int(12),
+ data mediumblob,
+ PRIMARY KEY(series, chunk)
+);
\ No newline at end of file
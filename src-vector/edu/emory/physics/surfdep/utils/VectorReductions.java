@@ -0,0 +1,122 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorReductions.java
+ * 
+ * Reductions written against the JDK Vector API, which
+ * compile to SIMD instructions of the preferred width of
+ * the host. Sums of squares widen each half of an int
+ * vector to longs before squaring so they cannot overflow.
+ * The API is an incubator module (JDK 16+), so this class
+ * lives in its own source root, src-vector, compiled after
+ * src with the main classes on the classpath, e.g.
+ * 		javac --add-modules jdk.incubator.vector -cp out ...
+ * It is loaded by name and otherwise never referenced, so
+ * src builds and runs without it; see
+ * {@link SurfaceReductionsFactory}.
+ * 
+ * @author Tyler Parsons
+ */
+public class VectorReductions implements SurfaceReductions {
+
+	private final static VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	private final static VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+	
+	/**
+	 * Elements summed per int lane before the lanes are
+	 * widened into a long accumulator, which is exact for
+	 * heights below 2^31/BLOCK = 2^25.
+	 */
+	private final static int BLOCK = 1 << 6;
+	
+	private final static int PARTS = INTS.length()/LONGS.length();
+	
+	private final ScalarReductions scalar = new ScalarReductions();
+	
+	@Override
+	public long sum(int[] a, int from, int to) {
+		LongVector sum = LongVector.zero(LONGS);
+		int i = from;
+		int bound = from + INTS.loopBound(to - from);
+		while (i < bound) {
+			int end = Math.min(bound, i + BLOCK*INTS.length());
+			IntVector acc = IntVector.zero(INTS);
+			for (; i < end; i += INTS.length())
+				acc = acc.add(IntVector.fromArray(INTS, a, i));
+			sum = sum.add(widen(acc));
+		}
+		return sum.reduceLanes(VectorOperators.ADD) + scalar.sum(a, i, to);
+	}
+
+	@Override
+	public long sumOfSquares(int[] a, int from, int to) {
+		LongVector acc = LongVector.zero(LONGS);
+		int i = from;
+		int bound = from + INTS.loopBound(to - from);
+		for (; i < bound; i += INTS.length()) {
+			IntVector v = IntVector.fromArray(INTS, a, i);
+			for (int part = 0; part < PARTS; part++) {
+				LongVector w = (LongVector)v.convertShape(VectorOperators.I2L, LONGS, part);
+				acc = acc.add(w.mul(w));
+			}
+		}
+		return acc.reduceLanes(VectorOperators.ADD) + scalar.sumOfSquares(a, i, to);
+	}
+
+	@Override
+	public int min(int[] a, int from, int to) {
+		if (to - from < INTS.length())
+			return scalar.min(a, from, to);
+		IntVector acc = IntVector.broadcast(INTS, a[from]);
+		int i = from;
+		int bound = from + INTS.loopBound(to - from);
+		for (; i < bound; i += INTS.length())
+			acc = acc.min(IntVector.fromArray(INTS, a, i));
+		int min = acc.reduceLanes(VectorOperators.MIN);
+		return i < to ? Math.min(min, scalar.min(a, i, to)) : min;
+	}
+
+	@Override
+	public int max(int[] a, int from, int to) {
+		if (to - from < INTS.length())
+			return scalar.max(a, from, to);
+		IntVector acc = IntVector.broadcast(INTS, a[from]);
+		int i = from;
+		int bound = from + INTS.loopBound(to - from);
+		for (; i < bound; i += INTS.length())
+			acc = acc.max(IntVector.fromArray(INTS, a, i));
+		int max = acc.reduceLanes(VectorOperators.MAX);
+		return i < to ? Math.max(max, scalar.max(a, i, to)) : max;
+	}
+	
+	/**
+	 * @return the lanes of v summed pairwise into longs
+	 */
+	private static LongVector widen(IntVector v) {
+		LongVector w = (LongVector)v.convertShape(VectorOperators.I2L, LONGS, 0);
+		for (int part = 1; part < PARTS; part++)
+			w = w.add((LongVector)v.convertShape(VectorOperators.I2L, LONGS, part));
+		return w;
+	}
+	
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers;
+
+import edu.emory.physics.surfdep.models.Deposition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AverageAggregator.java
+ * 
+ * Accumulates running averages for one of the averages
+ * tables in memory, keyed as the table is by time, L, x,
+ * p_diff and l_0, and writes them with batched upserts.
+ * Rows already in the table are combined with the
+ * accumulated ones by weighting each average by its
+ * number of samples S, so a flush never reads the table,
+ * and full batches reuse one prepared statement.
+ * Shared by the sinks of concurrent trials.
+ * 
+ * @author Tyler Parsons
+ */
+public class AverageAggregator {
+
+	/**
+	 * Rows per INSERT statement.
+	 */
+	public final static int BATCH_ROWS = 1000;
+	
+	/**
+	 * Keys held before add flushes on its own, bounding
+	 * the memory of long runs.
+	 */
+	public final static int MAX_KEYS = 1 << 16;
+	
+	private final SQLExecutor db;
+	private final String table;
+	private final String timeColumn;
+	
+	/**
+	 * Columns averaged over samples, and columns that
+	 * take the value of the latest sample.
+	 */
+	private final String[] averaged;
+	private final String[] latest;
+	
+	private HashMap<Key, Entry> entries;
+	
+	/**
+	 * @param db			executes the upserts
+	 * @param table			table written by flush
+	 * @param timeColumn	first key column
+	 * @param averaged		columns averaged over samples
+	 * @param latest		columns set to the latest sample
+	 */
+	public AverageAggregator(SQLExecutor db, String table, String timeColumn,
+			String[] averaged, String[] latest) {
+		this.db = db;
+		this.table = table;
+		this.timeColumn = timeColumn;
+		this.averaged = averaged;
+		this.latest = latest;
+		entries = new HashMap<Key, Entry>();
+	}
+	
+	/**
+	 * Adds S samples of model at time.
+	 * @param values	averages over the S samples of each
+	 * 					averaged column, then the values of
+	 * 					each latest column
+	 */
+	public void add(Deposition model, long time, int S, double... values) {
+		
+		Key key = new Key(
+			time,
+			model.getLength(),
+			model.getParameter("x"),
+			model.getParameter("p_diff"),
+			model.getParameter("l_0")
+		);
+		
+		boolean full;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(averaged.length, latest.length);
+				entries.put(key, entry);
+			}
+			for (int i = 0; i < averaged.length; i++)
+				entry.sums[i] += values[i]*S;
+			for (int i = 0; i < latest.length; i++)
+				entry.latest[i] = values[averaged.length + i];
+			entry.S += S;
+			full = entries.size() >= MAX_KEYS;
+		}
+		if (full)
+			flush();
+	}
+	
+	/**
+	 * Writes and forgets every accumulated average.
+	 */
+	public void flush() {
+		
+		HashMap<Key, Entry> batch;
+		synchronized (this) {
+			if (entries.isEmpty())
+				return;
+			batch = entries;
+			entries = new HashMap<Key, Entry>();
+		}
+		
+		// Averages are combined before S is, which MySQL
+		// assigns from left to right
+		String columns = timeColumn + ",L,x,p_diff,l_0";
+		String row = "(?,?,?,?,?";
+		String update = "";
+		for (String c: averaged) {
+			columns += "," + c;
+			row += ",?";
+			update += c + "=(" + c + "*S+VALUES(" + c + ")*VALUES(S))/(S+VALUES(S)),";
+		}
+		for (String c: latest) {
+			columns += "," + c;
+			row += ",?";
+			update += c + "=VALUES(" + c + "),";
+		}
+		columns += ",S";
+		row += ",?)";
+		update += "S=S+VALUES(S)";
+		
+		ArrayList<Object> params = new ArrayList<Object>();
+		int rows = 0;
+		for (Map.Entry<Key, Entry> e: batch.entrySet()) {
+			
+			Key k = e.getKey();
+			Entry v = e.getValue();
+			params.add(k.time);
+			params.add(k.L);
+			params.add(k.x);
+			params.add(k.p_diff);
+			params.add(k.l_0);
+			for (double sum: v.sums)
+				params.add(sum/v.S);
+			for (double last: v.latest)
+				params.add(last);
+			params.add(v.S);
+			
+			if (++rows == BATCH_ROWS) {
+				upsert(columns, row, rows, update, params);
+				params.clear();
+				rows = 0;
+			}
+		}
+		if (rows > 0)
+			upsert(columns, row, rows, update, params);
+	}
+	
+	/**
+	 * Upserts rows rows, so that full batches share
+	 * one statement.
+	 */
+	private void upsert(String columns, String row, int rows, String update, ArrayList<Object> params) {
+		StringBuilder values = new StringBuilder(row);
+		for (int i = 1; i < rows; i++)
+			values.append(',').append(row);
+		db.exec(
+			"INSERT INTO " + table +
+			" (" + columns + ") VALUES " + values +
+			" ON DUPLICATE KEY UPDATE " + update,
+			params.toArray()
+		);
+	}
+	
+	
+/******************
+ * Nested Classes *
+ ******************/
+	
+	public interface SQLExecutor {
+		
+		public void exec(String sql, Object... params);
+		
+	}
+	
+	/**
+	 * Primary key of a row of an averages table.
+	 */
+	private static class Key {
+		
+		final long time;
+		final int L;
+		final double x;
+		final double p_diff;
+		final double l_0;
+		
+		Key(long time, int L, double x, double p_diff, double l_0) {
+			this.time = time;
+			this.L = L;
+			this.x = x;
+			this.p_diff = p_diff;
+			this.l_0 = l_0;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key)o;
+			return time == k.time && L == k.L
+				&& Double.compare(x, k.x) == 0
+				&& Double.compare(p_diff, k.p_diff) == 0
+				&& Double.compare(l_0, k.l_0) == 0;
+		}
+		
+		@Override
+		public int hashCode() {
+			int h = Long.hashCode(time);
+			h = 31*h + L;
+			h = 31*h + Double.hashCode(x);
+			h = 31*h + Double.hashCode(p_diff);
+			h = 31*h + Double.hashCode(l_0);
+			return h;
+		}
+		
+	}
+	
+	/**
+	 * Samples accumulated for a key.
+	 */
+	private static class Entry {
+		
+		final double[] sums;
+		final double[] latest;
+		int S;
+		
+		Entry(int averaged, int latest) {
+			sums = new double[averaged];
+			this.latest = new double[latest];
+		}
+		
+	}
+	
+}
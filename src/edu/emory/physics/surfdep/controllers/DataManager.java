@@ -16,23 +16,18 @@
 package edu.emory.physics.surfdep.controllers;
 
 import edu.emory.physics.surfdep.models.Deposition;
+import edu.emory.physics.surfdep.utils.EmbeddedDBArray.DBOperationCallback;
 import edu.emory.physics.surfdep.utils.MySQLClient;
 
-import java.awt.image.BufferedImage;
-import java.awt.Container;
-
-import javax.imageio.ImageIO;
-
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Scanner;
 
-import org.opensourcephysics.display.DrawingFrame;
-
 /**
  * DepositionDataManager.java
  * Created:	7 May 2014
@@ -41,8 +36,10 @@ import org.opensourcephysics.display.DrawingFrame;
  * A class that manages the recording of 
  * simulation data. Automatically creates 
  * a file system to store data, outputs 
- * numerical values and saves images with
- * file I/O. Also saves data to MySQL db.
+ * numerical values and locates images 
+ * with file I/O. Also saves data to MySQL
+ * db. Loads no AWT or OSP classes, so it
+ * can be used by headless runs.
  */
 public class DataManager {
 
@@ -51,19 +48,41 @@ public class DataManager {
 	private File idLog;
 	
 	private Scanner in;
-	private FileWriter out;
+	private Writer out;
 	
 	private int outputId;
 	
 	final static String baseDir = "data\\";
 	
+	/**
+	 * Upper bound on models per trial, separating the
+	 * width series ids of successive trials.
+	 */
+	public final static int MODELS_PER_TRIAL = 10000;
+	
 	private MySQLClient db;
 	
+	/**
+	 * Commits txt, csv and db output in the background,
+	 * if set. Otherwise output is written immediately.
+	 */
+	private OutputJournal journal;
+	
+	final static String JOURNAL_FILE = "output_journal.dat";
+	
 	private final static String DB_TABLE_MODELS = "models";
 	private final static String DB_TABLE_AVERAGES = "averages";
 	private final static String DB_TABLE_SCALED_AVERAGES = "scaled_averages";
 	private final static String DB_TABLE_LOG_AVERAGES = "logarithmic_averages";
 	
+	/**
+	 * Averages accumulated in memory until flushAverages,
+	 * shared with any sinks.
+	 */
+	private AverageAggregator averages;
+	private AverageAggregator scaledAverages;
+	private AverageAggregator logAverages;
+	
 	public DataManager(String txtPath) {
 		txt = new File(txtPath);
 	}
@@ -76,12 +95,31 @@ public class DataManager {
 	public DataManager(String txtPath, String csvPath, MySQLClient db) {
 		this(txtPath, csvPath);
 		this.db = db;
+		averages = new AverageAggregator(this::execSQL, DB_TABLE_AVERAGES, "t",
+				new String[] {"w_avg"}, new String[0]);
+		scaledAverages = new AverageAggregator(this::execSQL, DB_TABLE_SCALED_AVERAGES, "h_avg",
+				new String[] {"w_avg"}, new String[0]);
+		logAverages = new AverageAggregator(this::execSQL, DB_TABLE_LOG_AVERAGES, "t",
+				new String[] {"w_avg", "h_avg"}, new String[] {"A"});
 	}
 	
 	public DataManager(String idLogPath, String txtPath, String csvPath) {
-		this(txtPath, csvPath, MySQLClient.getSingleton("depositions", "bdm", "d3po$ition$"));
+		this(idLogPath, txtPath, csvPath, null);
+	}
+	
+	/**
+	 * @param onReplay	brackets the replay of output left by
+	 * 					an earlier run, if any; may be null
+	 */
+	public DataManager(String idLogPath, String txtPath, String csvPath,
+			DBOperationCallback onReplay) {
+		this(txtPath, csvPath, MySQLClient.getClient("depositions", "bdm", "d3po$ition$"));
 		idLog = new File(idLogPath);
 		outputId = readOutputID();
+		// Replays output left by an earlier run
+		journal = OutputJournal.open(
+			new File(idLog.getAbsoluteFile().getParentFile(), JOURNAL_FILE), db, onReplay
+		);
 	}
 	
 /*****************
@@ -105,6 +143,49 @@ public class DataManager {
 		plotDir.mkdir();
 	}
 	
+	/**
+	 * @param modelId	id of a model within the current trial,
+	 * 					less than MODELS_PER_TRIAL
+	 * @return id of the model's width series, unique across trials
+	 * @throws IllegalArgumentException if modelId would share
+	 * 			its series id with a model of another trial
+	 * @throws IllegalStateException if the series ids of this
+	 * 			trial do not fit in an int
+	 */
+	public int getSeriesId(int modelId) throws IllegalArgumentException, IllegalStateException {
+		if (modelId < 0 || modelId >= MODELS_PER_TRIAL)
+			throw new IllegalArgumentException(
+				"Model id "+modelId+" is outside [0, "+MODELS_PER_TRIAL+")"
+			);
+		if (outputId > (Integer.MAX_VALUE - modelId)/MODELS_PER_TRIAL)
+			throw new IllegalStateException(
+				"Output id "+outputId+" is too large to give unique series ids"
+			);
+		return outputId*MODELS_PER_TRIAL + modelId;
+	}
+	
+	/**
+	 * Creates a DataManager which writes txt and csv output
+	 * to its own files in the current trial directory, and
+	 * shares this manager's db and output id. Intended for
+	 * one of several trials running concurrently.
+	 * @param name	base name of the sink's files
+	 */
+	public DataManager createSink(String name) {
+		String trialDir = baseDir+"trial"+outputId+"\\";
+		DataManager sink = new DataManager(
+			trialDir + name + ".txt",
+			trialDir + name + ".csv",
+			db
+		);
+		sink.outputId = outputId;
+		sink.journal = journal;
+		sink.averages = averages;
+		sink.scaledAverages = scaledAverages;
+		sink.logAverages = logAverages;
+		return sink;
+	}
+	
 	/**
 	 * id is determined externally from log file
 	 * @return outputId
@@ -159,14 +240,55 @@ public class DataManager {
 	
 	protected void printSafely(File f, Printer p) {
 		try {
-			out = new FileWriter(f, true);
-			p.print();
-			out.close();
+			if (journal != null) {
+				out = new StringWriter();
+				p.print();
+				journal.append(f, out.toString());
+			}
+			else {
+				out = new FileWriter(f, true);
+				p.print();
+				out.close();
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Appends text to f, through the journal if there is one.
+	 */
+	protected void append(File f, String text) {
+		printSafely(f, new Printer() {
+			@Override
+			public void print() throws IOException {
+				out.append(text);
+			}
+		});
+	}
+	
+	/**
+	 * Executes sql with params bound to its parameters,
+	 * through the journal if there is one.
+	 */
+	protected void execSQL(String sql, Object... params) {
+		if (journal != null)
+			journal.exec(sql, params);
+		else
+			db.exec(sql, params);
+	}
+	
+	/**
+	 * Waits for all output to be written, if it is
+	 * written in the background.
+	 * @throws IllegalStateException if output could not be
+	 * 			written, and is kept to be replayed
+	 */
+	public void sync() throws IllegalStateException {
+		if (journal != null)
+			journal.sync();
+	}
+	
 	public <T> String txtParamToString(String key, T value) {
 		return "\n" + key + "\t" + value;
 	}
@@ -210,7 +332,6 @@ public class DataManager {
 		printSafely(txt, new Printer() {
 			@Override
 			public void print() throws IOException {
-				out = new FileWriter(txt, true);
 				String[] packages = model.getClass().getName().split("\\.");
 				out.append("\n***************************");
 				out.append("\n"+packages[packages.length-1]);
@@ -221,7 +342,6 @@ public class DataManager {
 				out.append(getTxtOutput(model.parameters(), addlParams));
 				
 				out.append('\n');
-				out.close();
 			}
 		});
 	}
@@ -259,22 +379,12 @@ public class DataManager {
 		});
 	}
 	
-	public void saveImage(DrawingFrame frame, String directory, String name) {
-
-		//Save content to a BufferedImage
-		Container content = frame.getContentPane();
-		BufferedImage image = new BufferedImage(content.getWidth(),
-												content.getHeight(),
-												BufferedImage.TYPE_INT_RGB);
-		content.paint(image.getGraphics());
-		
-		//Print Content to correct folder
-		String imgPath = baseDir+"trial"+outputId+"\\"+directory+"\\"+name;
-		try {
-			ImageIO.write(image, "jpeg", new File(imgPath));
-		} catch(IOException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * @return path of a file in the given directory
+	 * 			of the current trial directory.
+	 */
+	public String getTrialPath(String directory, String name) {
+		return baseDir+"trial"+outputId+"\\"+directory+"\\"+name;
 	}
 	
 	public void saveAll(Deposition model, HashMap<String, Double> addlParams) {
@@ -288,13 +398,7 @@ public class DataManager {
  *******************/
 	
 	public void printToCSV(String output) {
-		try {
-			out = new FileWriter(csv, true);
-			out.append(output + "\t");
-			out.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		append(csv, output + "\t");
 	}
 	
 	public void printToCSV(String csvPath, String output) {
@@ -303,293 +407,104 @@ public class DataManager {
 	}
 	
 	public void printToTxt(String output) {
-		try {
-			out = new FileWriter(txt, true);
-			out.append(output);
-			out.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		append(txt, output);
 	}
 	
 /*********************
  * MySQL Integration *
  *********************/
 	
-	/**
-	 * Input strings to be converted to SQL NULL type
-	 */
-	private String[] nullValues = {
-			"NaN",
-			"",
-			"Infinity",
-			"-Infinity"
-	};
-	
 	/**
 	 * Fields to ignore while saving model to db
 	 */
 	private String[] ignoredModelFields = {
-			"A"
+			"A",
+			"rng",
+			"lattice",
+			"widthStore",
+			"widthCodec",
+			"widthQuantum",
+			"widthCacheMB",
+			"widthBackend"
 	};
 	
-	/**
-	 * Cleans inputs to protect from a variety
-	 * of syntax errors
-	 * @param raw	A potentially unclean string
-	 * @return	A string that will not produce
-	 * 			syntax errors by itself
-	 */
-	public String cleanInput(String raw) {
-		
-		// Replace inputs with null values where applicable
-		for (String n: nullValues)
-			if (raw.equals(n))
-				return "NULL";		
-		
-		// raw is clean!
-		return raw;
-	}
-	
 	public void saveToDB(Deposition model, HashMap<String, Double> addlParams) {
 		
 		// Add trial param
 		addlParams.put("trial", (double)outputId);
 		HashMap<String, Double> modelParams = new HashMap<>(model.parameters());
 		
-		// Generate insert statement
+		// Generate insert statement, binding values so that
+		// models with the same fields share one statement
 		String columns = "";
 		String values = "";
+		ArrayList<Object> params = new ArrayList<Object>();
 		// Parse model params
 		for (String ignoredKey: ignoredModelFields)
 			modelParams.remove(ignoredKey);
 		for (String key: modelParams.keySet()) {
 			columns += key + ",";
-			values += cleanInput(""+modelParams.get(key)) + ",";
+			values += "?,";
+			params.add(modelParams.get(key));
 		}
 		// Parse addlParams
 		for (String key: addlParams.keySet()) {
 			columns += key + ",";
-			values += cleanInput(""+addlParams.get(key)) + ",";
+			values += "?,";
+			params.add(addlParams.get(key));
 		}
 		
-		db.exec(
+		execSQL(
 			"INSERT INTO " + DB_TABLE_MODELS +
 			" (" + columns.substring(0, columns.length() - 1) +
-			") VALUES (" + values.substring(0, values.length() - 1) + ")"
+			") VALUES (" + values.substring(0, values.length() - 1) + ")",
+			params.toArray()
 		);
 		
 	}
 	
+	/**
+	 * Adds the width of model at its current time to
+	 * the averages written by {@link #flushAverages()}.
+	 */
 	public void updateW_avg(Deposition model) {
-		
-		// Query current average value
-		
-		String whereClause = 
-			"t=" + model.getTime() + " AND " +
-			"L=" + model.getLength() + " AND " +
-			"x=" + model.getParameter("x") + " AND " +
-			"p_diff=" + model.getParameter("p_diff") + " AND " +
-			"l_0=" + model.getParameter("l_0");
-		
-		ResultSet results = db.query(
-			"SELECT w_avg, S FROM " + DB_TABLE_AVERAGES +
-			" WHERE " + whereClause
-		);
-		
-		try {
-				
-			// Insert new record if none exists
-			if(results == null || !results.first()) {
-				
-				String columns = "(t,w_avg,L,x,p_diff,l_0,S)";
-				
-				String values = 
-					model.getTime() + "," +
-					model.getWidth(model.getTime()) + "," +
-					model.getLength() + "," +
-					model.getParameter("x") + "," +
-					model.getParameter("p_diff") + "," +
-					model.getParameter("l_0") + 
-					",1";	// Number of samples
-				
-				db.exec(
-					"INSERT INTO " + DB_TABLE_AVERAGES +
-					" " + columns + " VALUES (" +
-					values + ")"
-				);
-				
-			}
-			// Update existing record
-			else {
-				
-				// Obtain w_avg, samples from results
-				double w_avg = results.getDouble("w_avg");
-				int S = results.getInt("S");
-				
-				// Calculate running average
-				w_avg = (w_avg*S + model.getWidth(model.getTime()))/(S+1);
-				
-				String assignments = 
-					"w_avg=" + w_avg +
-					", S=" + (S+1);
-				
-				db.exec(
-					"UPDATE " + DB_TABLE_AVERAGES +
-					" SET " + assignments +
-					" WHERE " + whereClause
-				);
-				
-			}
-			
-		} catch (SQLException e) { 
-			e.printStackTrace();
-		}
-		
+		averages.add(model, model.getTime(), 1, model.getWidth(model.getTime()));
 	}
 	
+	/**
+	 * Adds S samples averaging w_avg at the scaled time of
+	 * model to the averages written by {@link #flushAverages()}.
+	 */
 	public void updateScaledW_avg(Deposition model, double w_avg, int S) {
-		
-		// Query current average value
-		
-		String whereClause = 
-			"h_avg=" + model.getScaledTime() + " AND " +
-			"L=" + model.getLength() + " AND " +
-			"x=" + model.getParameter("x") + " AND " +
-			"p_diff=" + model.getParameter("p_diff") + " AND " +
-			"l_0=" + model.getParameter("l_0");
-		
-		ResultSet results = db.query(
-			"SELECT w_avg, S FROM " + DB_TABLE_SCALED_AVERAGES +
-			" WHERE " + whereClause
-		);
-		
-		try {
-				
-			// Insert new record if none exists
-			if(results == null || !results.first()) {
-				
-				String columns = "(h_avg,w_avg,L,x,p_diff,l_0,S)";
-				
-				String values = 
-					model.getScaledTime() + "," +
-					w_avg + "," +
-					model.getLength() + "," +
-					model.getParameter("x") + "," +
-					model.getParameter("p_diff") + "," +
-					model.getParameter("l_0") + 
-					","+S;	// Number of samples
-				
-				db.exec(
-					"INSERT INTO " + DB_TABLE_SCALED_AVERAGES +
-					" " + columns + " VALUES (" +
-					values + ")"
-				);
-				
-			}
-			// Update existing record
-			else {
-				
-				// Obtain w_avg, samples from results
-				double w_avg0 = results.getDouble("w_avg");
-				int S0 = results.getInt("S");
-				
-				// Calculate running average
-				w_avg = (w_avg0*S0 + model.getWidth(model.getScaledTime()))/(S0+S);
-				
-				String assignments = 
-					"w_avg=" + w_avg +
-					", S=" + (S0+S);
-				
-				db.exec(
-					"UPDATE " + DB_TABLE_SCALED_AVERAGES +
-					" SET " + assignments +
-					" WHERE " + whereClause
-				);
-				
-			}
-			
-		} catch (SQLException e) { 
-			e.printStackTrace();
-		}
-		
+		scaledAverages.add(model, model.getScaledTime(), S, w_avg);
 	}
 	
 	public void updateScaledW_avg(Deposition model) {
 		updateScaledW_avg(model, model.getWidth(model.getScaledTime()), 1);
 	}
 
+	/**
+	 * Adds the width and average height of model at its
+	 * current time to the logarithmic averages written by
+	 * {@link #flushAverages()}.
+	 */
 	public void updateAverages(Deposition model) {
-
-		// Look for current average value
-		String whereClause = 
-			"t=" + model.getTime() + " AND " +
-			"L=" + model.getLength() + " AND " +
-			"x=" + model.getParameter("x") + " AND " +
-			"p_diff=" + model.getParameter("p_diff") + " AND " +
-			"l_0=" + model.getParameter("l_0");
-		
-		ResultSet results = db.query(
-			"SELECT w_avg, h_avg, S FROM " + DB_TABLE_LOG_AVERAGES +
-			" WHERE " + whereClause
+		logAverages.add(model, model.getTime(), 1,
+			model.getWidth(model.getTime()),
+			model.getAverageHeight(),
+			model.getParameter("A")
 		);
-		
-		try {
-				
-			// Insert new record if none exists
-			if(results == null || !results.first()) {
-				
-				String columns = "(t,w_avg,h_avg,L,x,p_diff,l_0,S,A)";
-				
-				String values = 
-					model.getTime() + "," +
-					model.getWidth(model.getTime()) + "," +
-					model.getAverageHeight() + "," +
-					model.getLength() + "," +
-					model.getParameter("x") + "," +
-					model.getParameter("p_diff") + "," +
-					model.getParameter("l_0") + 
-					",1" +	// Number of samples
-					"," + model.getParameter("A");
-				
-				db.exec(
-					"INSERT INTO " + DB_TABLE_LOG_AVERAGES +
-					" " + columns + " VALUES (" +
-					values + ")"
-				);
-				
-			}
-			// Update existing record
-			else {
-				
-				// Obtain w_avg, samples from results
-				double w_avg = results.getDouble("w_avg");
-				double h_avg = results.getDouble("h_avg");
-				int S = results.getInt("S");
-				double A = model.getParameter("A");
-				
-				// Calculate running average
-				w_avg = (w_avg*S + model.getWidth(model.getTime()))/(S+1);
-				h_avg = (h_avg*S + model.getAverageHeight())/(S+1);
-				
-				String assignments = 
-					"w_avg=" + w_avg + "," +
-					"h_avg=" + h_avg + "," +
-					"S=" 	 + (S+1) + "," +
-					"A="     + A;
-				
-				db.exec(
-					"UPDATE " + DB_TABLE_LOG_AVERAGES +
-					" SET " + assignments +
-					" WHERE " + whereClause
-				);
-				
-			}
-			
-		} catch (SQLException e) { 
-			e.printStackTrace();
-		}
-		
+	}
+	
+	/**
+	 * Writes all accumulated averages to the db, combining
+	 * them with those already there. Sinks share their
+	 * parent's averages, so either may flush them.
+	 */
+	public void flushAverages() {
+		averages.flush();
+		scaledAverages.flush();
+		logAverages.flush();
 	}
 	
 }
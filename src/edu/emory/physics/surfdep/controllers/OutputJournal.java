@@ -0,0 +1,581 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers;
+
+import edu.emory.physics.surfdep.utils.EmbeddedDBArray.DBOperationCallback;
+import edu.emory.physics.surfdep.utils.MySQLClient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * OutputJournal.java
+ * 
+ * Writes the text and SQL output of {@link DataManager}s
+ * behind their backs. Outputs are queued and a background
+ * thread commits them in groups: each group is appended to
+ * a journal file and forced to disk, then applied to the
+ * output files and the db, and a single marker that it is
+ * done is forced to disk after it. The journal is emptied
+ * instead whenever the queue is, and any entries after the
+ * last marker are replayed when it is next opened.
+ * 
+ * Appends record where in their file they start, so replay
+ * skips those already written and redoes any cut short, and
+ * they are written exactly once. The SQL statements of a
+ * group, such as the average upserts, are not idempotent,
+ * and run in one db transaction, so that either all or none
+ * of them take effect. They run again on replay only if the
+ * process stops between the commit of that transaction and
+ * the marker reaching the disk. No output is lost.
+ * 
+ * If output cannot be applied, the journal stops applying
+ * and only journals what follows, so that all of it is
+ * replayed in order when the journal is next opened, and
+ * {@link #sync()} throws.
+ * 
+ * One journal is opened per file and shared by every
+ * manager writing through it. Output files must only be
+ * written through the journal.
+ * 
+ * @author Tyler Parsons
+ */
+public class OutputJournal {
+	
+	/**
+	 * Most entries committed in one group.
+	 */
+	public final static int MAX_GROUP_SIZE = 1024;
+	
+	/**
+	 * Entry types, as stored in the journal.
+	 */
+	final static byte APPEND = 0;
+	final static byte SQL = 1;
+	/**
+	 * Marks every entry up to and including a sequence
+	 * number done. Groups are applied in order, so all
+	 * entries before the group are done too.
+	 */
+	final static byte DONE = 2;
+	
+	/**
+	 * A point in the queue that callers wait for.
+	 */
+	final static byte BARRIER = 3;
+	
+	/**
+	 * Types of SQL parameters, as stored in the journal.
+	 */
+	final static byte NULL = 0;
+	final static byte DOUBLE = 1;
+	final static byte LONG = 2;
+	final static byte INTEGER = 3;
+	final static byte STRING = 4;
+	final static byte DECIMAL = 5;
+	
+	private static HashMap<File, OutputJournal> journals = new HashMap<File, OutputJournal>();
+	
+	private final File file;
+	private final MySQLClient db;
+	
+	private FileChannel channel;
+	private DataOutputStream journal;
+	
+	private LinkedBlockingQueue<Entry> queue;
+	private Thread committer;
+	private long nextSeq;
+	
+	/**
+	 * Where the next append to each output file starts.
+	 * Only the committer writes the output files.
+	 */
+	private HashMap<String, Long> ends = new HashMap<String, Long>();
+	
+	/**
+	 * Why output could not be applied, or null.
+	 */
+	private volatile Exception failure;
+	
+	/**
+	 * Returns the journal at file, opening it and replaying
+	 * what it holds if it is not already open.
+	 * @param onReplay	brackets a replay, if there is anything
+	 * 					to replay; may be null
+	 */
+	public static synchronized OutputJournal open(File file, MySQLClient db,
+			DBOperationCallback onReplay) {
+		File key = file.getAbsoluteFile();
+		OutputJournal j = journals.get(key);
+		if (j == null) {
+			j = new OutputJournal(key, db, onReplay);
+			journals.put(key, j);
+		}
+		return j;
+	}
+	
+	private OutputJournal(File file, MySQLClient db, DBOperationCallback onReplay) {
+		
+		this.file = file;
+		this.db = db;
+		
+		try {
+			FileOutputStream stream = new FileOutputStream(file, true);
+			channel = stream.getChannel();
+			journal = new DataOutputStream(new BufferedOutputStream(stream));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		// Marks replayed entries done in the same file
+		replay(onReplay);
+		
+		queue = new LinkedBlockingQueue<Entry>();
+		committer = new Thread(this::commitLoop, "OutputJournal committer");
+		committer.setDaemon(true);
+		committer.start();
+		
+		// Commit what is queued when the JVM exits normally
+		Runtime.getRuntime().addShutdownHook(new Thread(this::sync));
+	}
+	
+	/**
+	 * Queues text to be appended to f.
+	 */
+	public void append(File f, String text) {
+		queue.add(new Entry(APPEND, f.getPath(), text));
+	}
+	
+	/**
+	 * Queues an SQL statement to be executed.
+	 * @param params	values bound to its parameters, which
+	 * 					may be null, Double, Long, Integer,
+	 * 					String or BigDecimal
+	 */
+	public void exec(String sql, Object... params) {
+		Entry entry = new Entry(SQL, "", sql);
+		entry.params = params;
+		queue.add(entry);
+	}
+	
+	/**
+	 * Waits for every entry queued so far to be applied.
+	 * @throws IllegalStateException if output could not be
+	 * 			applied, in which case it is kept in the
+	 * 			journal to be replayed
+	 */
+	public void sync() throws IllegalStateException {
+		Entry barrier = new Entry(BARRIER, "", "");
+		queue.add(barrier);
+		try {
+			while (!barrier.applied.await(1, TimeUnit.SECONDS)) {
+				if (!committer.isAlive())
+					throw new IllegalStateException("Output journal committer died");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null)
+			throw new IllegalStateException(
+				"Output could not be applied, it is kept in "+file+" to be replayed", failure
+			);
+	}
+	
+	
+/****************
+ * Group Commit *
+ ****************/
+	
+	private void commitLoop() {
+		
+		ArrayList<Entry> group = new ArrayList<Entry>();
+		while (true) {
+			try {
+				group.add(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			queue.drainTo(group, MAX_GROUP_SIZE - 1);
+			
+			try {
+				commit(group);
+			} catch (IOException | SQLException | RuntimeException e) {
+				e.printStackTrace();
+				failure = e;
+			} finally {
+				for (Entry entry: group)
+					if (entry.type == BARRIER)
+						entry.applied.countDown();
+				group.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Makes group durable in the journal, then applies it
+	 * unless output has failed, and marks it done. A group
+	 * that cannot be journaled is still applied.
+	 */
+	private void commit(ArrayList<Entry> group) throws IOException, SQLException {
+		
+		// Only this thread writes the output files, so each
+		// append starts where the one before it ends. Once
+		// output has failed, that includes appends which
+		// were only journaled.
+		if (failure == null)
+			ends.clear();
+		for (Entry entry: group)
+			if (entry.type == APPEND) {
+				Long end = ends.get(entry.path);
+				entry.offset = (end != null) ? end : new File(entry.path).length();
+				ends.put(entry.path, entry.offset + entry.bytes.length);
+			}
+		
+		boolean journaled = true;
+		try {
+			for (Entry entry: group)
+				if (entry.type != BARRIER) {
+					entry.seq = nextSeq++;
+					write(entry);
+				}
+			journal.flush();
+			channel.force(false);
+		} catch (IOException e) {
+			e.printStackTrace();
+			journaled = false;
+		}
+		
+		// Kept to be replayed, after what could not be applied
+		if (failure != null)
+			return;
+		
+		apply(group);
+		
+		if (!journaled)
+			return;
+		// Everything journaled has been applied
+		if (queue.isEmpty())
+			truncate();
+		else
+			markDone(nextSeq - 1);
+	}
+	
+	/**
+	 * Marks every entry up to and including seq done, and
+	 * forces the marker to disk.
+	 */
+	private void markDone(long seq) throws IOException {
+		journal.writeInt(9);
+		journal.writeByte(DONE);
+		journal.writeLong(seq);
+		journal.flush();
+		channel.force(false);
+	}
+	
+	private void truncate() throws IOException {
+		journal.flush();
+		channel.truncate(0);
+		channel.force(false);
+	}
+	
+	/**
+	 * Applies entries, writing appends in order, opening
+	 * each output file once, and then running the SQL
+	 * statements in order in one transaction.
+	 * @throws SQLException if the transaction fails, in which
+	 * 			case none of the statements have taken effect
+	 */
+	private void apply(ArrayList<Entry> entries) throws IOException, SQLException {
+		
+		ArrayList<String> sql = new ArrayList<String>();
+		ArrayList<Object[]> params = new ArrayList<Object[]>();
+		
+		LinkedHashMap<String, Writer> writers = new LinkedHashMap<String, Writer>();
+		try {
+			for (Entry entry: entries) {
+				if (entry.type == APPEND) {
+					Writer writer = writers.get(entry.path);
+					if (writer == null) {
+						writer = new OutputStreamWriter(
+							new FileOutputStream(entry.path, true), StandardCharsets.UTF_8);
+						writers.put(entry.path, writer);
+					}
+					writer.append(entry.text);
+				}
+				else if (entry.type == SQL) {
+					sql.add(entry.text);
+					params.add(entry.params);
+				}
+			}
+		} finally {
+			for (Writer writer: writers.values())
+				writer.close();
+		}
+		
+		if (!sql.isEmpty())
+			db.execAll(sql, params);
+	}
+	
+	
+/**********************
+ * Journal Read/Write *
+ **********************/
+	
+	/**
+	 * Writes entry as its length, type, payload CRC
+	 * and payload.
+	 */
+	private void write(Entry entry) throws IOException {
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+		payload.writeLong(entry.seq);
+		payload.writeLong(entry.offset);
+		payload.writeUTF(entry.path);
+		writeParams(payload, entry.params);
+		payload.write(entry.bytes);
+		
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		journal.writeInt(bytes.size() + 5);
+		journal.writeByte(entry.type);
+		journal.writeInt((int)crc.getValue());
+		bytes.writeTo(journal);
+	}
+	
+	/**
+	 * Applies any entries left in the journal after the last
+	 * done marker, reading up to the first incomplete record,
+	 * as one group. If they cannot be applied they are kept,
+	 * and the journal starts out failed.
+	 */
+	private void replay(DBOperationCallback onReplay) {
+		
+		if (file.length() == 0)
+			return;
+		
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		long done = -1;
+		long valid = 0;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			while (true) {
+				int length = in.readInt();
+				if (length < 5 || length > file.length() - valid)
+					break;
+				byte type = in.readByte();
+				if (type == DONE) {
+					done = Math.max(done, in.readLong());
+					valid += 4 + length;
+					continue;
+				}
+				int crc = in.readInt();
+				byte[] bytes = new byte[length - 5];
+				in.readFully(bytes);
+				
+				CRC32 check = new CRC32();
+				check.update(bytes);
+				if ((int)check.getValue() != crc)
+					break;
+				
+				DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+				long seq = payload.readLong();
+				long offset = payload.readLong();
+				String path = payload.readUTF();
+				Object[] params = readParams(payload);
+				byte[] text = new byte[payload.available()];
+				payload.readFully(text);
+				
+				Entry entry = new Entry(type, path, new String(text, StandardCharsets.UTF_8));
+				entry.seq = seq;
+				entry.offset = offset;
+				entry.params = params;
+				entries.add(entry);
+				nextSeq = Math.max(nextSeq, seq + 1);
+				valid += 4 + length;
+			}
+		} catch (EOFException e) {
+			// End of journal, or a record cut short by a crash
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		// Appends queued next start after those journaled,
+		// in case these cannot be applied
+		for (Entry entry: entries)
+			if (entry.type == APPEND) {
+				Long end = ends.get(entry.path);
+				ends.put(entry.path, Math.max(end != null ? end : 0L, entry.offset + entry.bytes.length));
+			}
+		
+		long start = System.currentTimeMillis();
+		boolean started = false;
+		try {
+			// Drop a record cut short, so that what is written
+			// next can be read back
+			if (valid < file.length())
+				channel.truncate(valid);
+			
+			ArrayList<Entry> pending = new ArrayList<Entry>();
+			for (Entry entry: entries)
+				if (entry.seq > done && !isWritten(entry))
+					pending.add(entry);
+			
+			if (!pending.isEmpty() && onReplay != null) {
+				onReplay.onOperationStarted();
+				started = true;
+			}
+			apply(pending);
+			truncate();
+		} catch (IOException | SQLException | RuntimeException e) {
+			e.printStackTrace();
+			failure = e;
+		}
+		if (started)
+			onReplay.onOperationCompleted(System.currentTimeMillis() - start);
+	}
+	
+	private static void writeParams(DataOutputStream out, Object[] params) throws IOException {
+		out.writeInt(params.length);
+		for (Object p: params) {
+			if (p == null) {
+				out.writeByte(NULL);
+			}
+			else if (p instanceof Double) {
+				out.writeByte(DOUBLE);
+				out.writeDouble((Double)p);
+			}
+			else if (p instanceof Long) {
+				out.writeByte(LONG);
+				out.writeLong((Long)p);
+			}
+			else if (p instanceof Integer) {
+				out.writeByte(INTEGER);
+				out.writeInt((Integer)p);
+			}
+			else if (p instanceof BigDecimal) {
+				out.writeByte(DECIMAL);
+				out.writeUTF(p.toString());
+			}
+			else {
+				out.writeByte(STRING);
+				out.writeUTF(p.toString());
+			}
+		}
+	}
+	
+	private static Object[] readParams(DataInputStream in) throws IOException {
+		Object[] params = new Object[in.readInt()];
+		for (int i = 0; i < params.length; i++) {
+			byte type = in.readByte();
+			if (type == DOUBLE)
+				params[i] = in.readDouble();
+			else if (type == LONG)
+				params[i] = in.readLong();
+			else if (type == INTEGER)
+				params[i] = in.readInt();
+			else if (type == DECIMAL)
+				params[i] = new BigDecimal(in.readUTF());
+			else if (type == STRING)
+				params[i] = in.readUTF();
+		}
+		return params;
+	}
+	
+	/**
+	 * Whether entry is an append already in its file. An
+	 * append cut short is removed, to be written again.
+	 */
+	private boolean isWritten(Entry entry) throws IOException {
+		
+		if (entry.type != APPEND)
+			return false;
+		
+		File f = new File(entry.path);
+		long length = f.length();
+		if (length >= entry.offset + entry.bytes.length)
+			return true;
+		if (length > entry.offset) {
+			try (RandomAccessFile partial = new RandomAccessFile(f, "rw")) {
+				partial.setLength(entry.offset);
+			}
+		}
+		return false;
+	}
+	
+	
+/******************
+ * Nested Classes *
+ ******************/
+	
+	private static class Entry {
+		
+		final byte type;
+		final String path;
+		final String text;
+		final byte[] bytes;
+		long seq;
+		
+		/**
+		 * Values bound to the parameters of an SQL statement.
+		 */
+		Object[] params = new Object[0];
+		
+		/**
+		 * Position in its file at which an append starts.
+		 */
+		long offset = -1;
+		
+		/**
+		 * Released once a barrier is reached.
+		 */
+		final CountDownLatch applied;
+		
+		Entry(byte type, String path, String text) {
+			this.type = type;
+			this.path = path;
+			this.text = text;
+			bytes = text.getBytes(StandardCharsets.UTF_8);
+			applied = (type == BARRIER) ? new CountDownLatch(1) : null;
+		}
+		
+	}
+	
+}
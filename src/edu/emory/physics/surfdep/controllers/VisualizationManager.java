@@ -20,11 +20,21 @@ import edu.emory.physics.surfdep.models.Deposition;
 import edu.emory.physics.surfdep.utils.LinearRegression;
 
 import java.awt.Color;
+import java.awt.Container;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import javax.imageio.ImageIO;
+
+import org.opensourcephysics.display.Drawable;
+import org.opensourcephysics.display.DrawingFrame;
+import org.opensourcephysics.display.DrawingPanel;
 import org.opensourcephysics.frames.LatticeFrame;
 import org.opensourcephysics.frames.PlotFrame;
 
@@ -89,6 +99,56 @@ public class VisualizationManager {
 		}
 	}
 	
+	/**
+	 * Draws the slot of a model, in which occupied sites
+	 * are red and empty sites black.
+	 */
+	private static class LatticeDrawable implements Drawable {
+		
+		private final Deposition model;
+		
+		LatticeDrawable(Deposition model) {
+			this.model = model;
+		}
+		
+		public void draw(DrawingPanel dp, Graphics g) {
+			
+			int xSpacing = (int)model.getXSpacing();
+			int ySpacing = (int)model.getYSpacing();
+			int atomicLength = (int)model.getAtomicLength();
+			int atomicHeight = (int)model.getAtomicHeight();
+			
+			for (int i = 0; i < model.getLength(); i++) {
+				for (int j = 0; j < model.getdH(); j++) {
+					g.setColor(model.isOccupied(i, j) ? Color.RED : Color.BLACK);
+					g.fillRect(	dp.xToPix(i*(xSpacing)),
+								dp.yToPix(j*(ySpacing)),
+								atomicLength,
+								atomicHeight);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Draws the line given by a linear regression
+	 * across the width of the panel.
+	 */
+	private static Drawable regressionLine(LinearRegression regression) {
+		return (DrawingPanel dp, Graphics g) -> {
+			
+			double m = regression.m();
+			double b = regression.b();
+			int x1 = dp.xToPix(dp.getXMin());
+			int y1 = dp.yToPix(m*dp.getXMin() + b);
+			int x2 = dp.xToPix(dp.getXMax());
+			int y2 = dp.yToPix(m*dp.getXMax() + b);
+			
+			g.setColor(Color.BLACK);
+			g.drawLine(x1, y1, x2, y2);
+		};
+	}
+	
 	/**
 	 * Abstract conversion of Data into Point.
 	 * @author Tyler
@@ -136,7 +196,7 @@ public class VisualizationManager {
 	 */
 	public void initVisuals(Deposition model) {
 		
-		lattice.addDrawable(model);
+		lattice.addDrawable(new LatticeDrawable(model));
 		lattice.setVisible(true);
 		lattice.setPreferredMinMax(
 			0, model.getLength()*model.getXSpacing(),
@@ -174,22 +234,26 @@ public class VisualizationManager {
 		for (int i = 0; i < models.size(); i++) {
 			
 			//plot entire width array, set color
-			Deposition m = models.get(i);
+			final Deposition m = models.get(i);
+			final int dataset = i;
 			width_vs_time.setMarkerColor(i, colors[i%colors.length]);
-			long time = m.getTime();
+			final double L = m.getLength();
 			
-			for (long t = 1; t <= time; t++) {
-				
-				long mod = dynamicPointModulus(t, m.getLength())*models.size();
-				
-				if (t % mod == 0) {
-					width_vs_time.append(
-							i,
-							Math.log(t/((double)(m.getLength()*m.getLength()))),
-							Math.log(m.getWidth(t)/Math.sqrt(m.getLength()))
-					);
+			m.forEachWidth(1, m.getTime() + 1L, (long index, double[] values, int from, int to) -> {
+				long t = index;
+				for (int j = from; j < to; j++, t++) {
+					
+					long mod = dynamicPointModulus(t, m.getLength())*models.size();
+					
+					if (t % mod == 0) {
+						width_vs_time.append(
+								dataset,
+								Math.log(t/(L*L)),
+								Math.log(values[j]/Math.sqrt(L))
+						);
+					}
 				}
-			}	
+			});
 		}
 		
 	}
@@ -258,6 +322,64 @@ public class VisualizationManager {
 		
 	}
 	
+	/**
+	 * Plots the average width against h_avg for each
+	 * length in {@code data}, without scaling either axis.
+	 * 
+	 * @param lengths distinct system lengths in {@code data}.
+	 * @param data	SQL query result data
+	 * @param nPoints total points to be plotted
+	 */
+	public void unscaledAvgWidthPlot(
+			ArrayList<Integer> lengths,
+			ResultSet data,
+			int nPoints
+	) {
+		
+		// Generate color map of lengths to java.awt.Colors
+		HashMap<Integer, MarkerData> colorMap = new HashMap<Integer, MarkerData>();
+		for (int i = 0; i < lengths.size(); i++)
+			colorMap.put(lengths.get(i), new MarkerData(colors[i%colors.length], i));
+		
+		// Clear Plot Frame
+		width_vs_time.clearData();
+		
+		// Determine point mod
+		int mod = (int) staticPointModulus(nPoints);
+		
+		try {
+		
+			int p = 0, i = 0;	// points plotted, iterations taken
+			while (data.next() && p < 10000) {
+				
+				// Plot every numLengths points
+				if (i++ % mod == 0) {
+				
+					// Grab data points, using h_avg time scaling
+					double t = data.getDouble("h_avg");
+					int L = data.getInt("L");
+					double w = data.getDouble("w_avg");
+					
+					// Set marker color
+					MarkerData md = colorMap.get(L);
+					width_vs_time.setMarkerColor(
+							md.index,
+							md.color
+					);
+				
+					// Add to PlotFrame
+					width_vs_time.append(md.index, t, w);
+					
+					p++;
+				}	
+			}
+		
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
 	/**
 	 * lnw_vs_lnL
 	 * 	-> plots ln of avgerage width against ln L
@@ -305,7 +427,7 @@ public class VisualizationManager {
 		}
 		
 		// Draw linear regression
-		width_vs_length.addDrawable(lnw_vs_lnL);
+		width_vs_length.addDrawable(regressionLine(lnw_vs_lnL));
 		width_vs_length.setVisible(true);
 
 	}
@@ -408,6 +530,31 @@ public class VisualizationManager {
 		return (N/10000) + 1;
 	}
 	
+/***************
+ * Image Files *
+ ***************/
+	
+	/**
+	 * Saves the content of a frame as a jpeg image.
+	 * @param path see {@link DataManager#getTrialPath(String, String)}
+	 */
+	public void saveImage(DrawingFrame frame, String path) {
+
+		//Save content to a BufferedImage
+		Container content = frame.getContentPane();
+		BufferedImage image = new BufferedImage(content.getWidth(),
+												content.getHeight(),
+												BufferedImage.TYPE_INT_RGB);
+		content.paint(image.getGraphics());
+		
+		//Print Content to correct folder
+		try {
+			ImageIO.write(image, "jpeg", new File(path));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
 /***********
  * Getters *
  ***********/
@@ -164,7 +164,7 @@ public class AnalysisControl {
 			
 			CredentialLoader.load("db_credentials.txt", username, password);
 			
-			db = MySQLClient.getSingleton("depositions", username.toString(),
+			db = MySQLClient.getClient("depositions", username.toString(),
 														 password.toString());
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -250,7 +250,8 @@ public class AnalysisControl {
 
 		return db.query(
 			"SELECT * FROM " + table +
-			" WHERE " + mgi.sqlWhereClause()
+			" WHERE " + mgi.sqlWhereClause(),
+			mgi.sqlParameters()
 		);
 		
 	}
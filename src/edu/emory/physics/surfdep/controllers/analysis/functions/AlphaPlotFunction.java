@@ -53,7 +53,8 @@ public class AlphaPlotFunction extends AnalysisFunction {
 		ResultSet data = control.getDb().query(
 			"SELECT L, lnw_avg FROM " +
 			" models WHERE " + mgi.sqlWhereClause() +
-			" ORDER BY L ASC"
+			" ORDER BY L ASC",
+			mgi.sqlParameters()
 		);
 		
 		final ArrayList<Point> lnw_avgByL = new ArrayList<>();
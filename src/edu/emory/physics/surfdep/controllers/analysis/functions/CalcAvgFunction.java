@@ -98,7 +98,8 @@ public class CalcAvgFunction extends SavingAnalysisFunction {
 		MySQLClient db = control.getDb();
 		ResultSet results = db.query(
 			"SELECT " + columns + " FROM " + AnalysisControl.DB_TABLE_MODELS + 
-			" WHERE " + mgi.sqlWhereClause()
+			" WHERE " + mgi.sqlWhereClause(),
+			mgi.sqlParameters()
 		);
 		
 		// Parse results into Averages
@@ -18,6 +18,7 @@ package edu.emory.physics.surfdep.controllers.analysis.functions;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import edu.emory.physics.surfdep.controllers.analysis.AnalysisControl;
@@ -68,9 +69,13 @@ public class CalcSlopeFunction extends SavingAnalysisFunction {
 		
 		int t1 = (int)Math.exp(lnt1);
 		int t2 = (int)Math.exp(lnt2);
+		Object[] bounds = Arrays.copyOf(mgi.sqlParameters(), mgi.sqlParameters().length + 2);
+		bounds[bounds.length - 2] = t1;
+		bounds[bounds.length - 1] = t2;
 		ResultSet data = control.getDb().query(
 			"SELECT * FROM " + AnalysisControl.DB_TABLE_AVERAGES + " WHERE " +
-			mgi.sqlWhereClause() + " AND t BETWEEN " + t1 + " AND " + t2
+			mgi.sqlWhereClause() + " AND t BETWEEN ? AND ?",
+			bounds
 		);
 		
 		// Store data in lists, with initial capacity O(log t)
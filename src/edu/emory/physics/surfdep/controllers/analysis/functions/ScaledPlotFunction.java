@@ -22,6 +22,7 @@ import java.util.HashMap;
 
 import edu.emory.physics.surfdep.controllers.VisualizationManager;
 import edu.emory.physics.surfdep.controllers.analysis.AnalysisControl;
+import edu.emory.physics.surfdep.utils.Cursor;
 import edu.emory.physics.surfdep.utils.InputDialog;
 import edu.emory.physics.surfdep.utils.ModelGroupIdentifier;
 import edu.emory.physics.surfdep.utils.MySQLClient;
@@ -79,21 +80,16 @@ public class ScaledPlotFunction extends AnalysisFunction {
 		ResultSet lengths = db.query(
 			"SELECT DISTINCT L FROM " + 
 			AnalysisControl.DB_TABLE_AVERAGES + 
-			" WHERE " + mgi.sqlWhereClause()
+			" WHERE " + mgi.sqlWhereClause(),
+			mgi.sqlParameters()
 		);
 
 		// Query total number of points to plot
 		ResultSet count = db.query(
 			"SELECT count(*) FROM " + 
 			AnalysisControl.DB_TABLE_AVERAGES + 
-			" WHERE " + mgi.sqlWhereClause()
-		);
-		
-		// Query all data, ordering by length to ensure all models are plotted
-		ResultSet data = db.query(
-			"SELECT * FROM " + AnalysisControl.DB_TABLE_AVERAGES +
-			" WHERE " + mgi.sqlWhereClause() +
-			" ORDER BY L DESC"
+			" WHERE " + mgi.sqlWhereClause(),
+			mgi.sqlParameters()
 		);
 		
 		try {
@@ -108,8 +104,22 @@ public class ScaledPlotFunction extends AnalysisFunction {
 				lengthList.add(lengths.getInt(1));
 			}
 			
-			// Delegate plotting to visManager
-			visManager.scaledAvgWidthPlot(lengthList, data, nPoints, z);
+			// Stream all data, ordering by length to ensure all models are plotted
+			Cursor cursor = db.stream(
+				"SELECT * FROM " + AnalysisControl.DB_TABLE_AVERAGES +
+				" WHERE " + mgi.sqlWhereClause() +
+				" ORDER BY L DESC",
+				mgi.sqlParameters()
+			);
+			if (cursor == null) {
+				control.showMessage("Null result set returned");
+			}
+			else {
+				try (Cursor data = cursor) {
+					// Delegate plotting to visManager
+					visManager.scaledAvgWidthPlot(lengthList, data.getResultSet(), nPoints, z);
+				}
+			}
 
 		} catch (SQLException sqle) {
 			sqle.printStackTrace();
@@ -22,6 +22,7 @@ import java.util.HashMap;
 
 import edu.emory.physics.surfdep.controllers.VisualizationManager;
 import edu.emory.physics.surfdep.controllers.analysis.AnalysisControl;
+import edu.emory.physics.surfdep.utils.Cursor;
 import edu.emory.physics.surfdep.utils.InputDialog;
 import edu.emory.physics.surfdep.utils.ModelGroupIdentifier;
 import edu.emory.physics.surfdep.utils.MySQLClient;
@@ -73,21 +74,16 @@ public class UnscaledPlotFunction extends AnalysisFunction {
 		ResultSet lengths = db.query(
 			"SELECT DISTINCT L FROM " + 
 			AnalysisControl.DB_TABLE_AVERAGES + 
-			" WHERE " + mgi.sqlWhereClause()
+			" WHERE " + mgi.sqlWhereClause(),
+			mgi.sqlParameters()
 		);
 
 		// Query total number of points to plot
 		ResultSet count = db.query(
 			"SELECT count(*) FROM " + 
 			AnalysisControl.DB_TABLE_AVERAGES + 
-			" WHERE " + mgi.sqlWhereClause()
-		);
-		
-		// Query all data, ordering by length to ensure all models are plotted
-		ResultSet data = db.query(
-			"SELECT * FROM " + AnalysisControl.DB_TABLE_AVERAGES +
-			" WHERE " + mgi.sqlWhereClause() +
-			" ORDER BY L DESC"
+			" WHERE " + mgi.sqlWhereClause(),
+			mgi.sqlParameters()
 		);
 		
 		try {
@@ -105,8 +101,22 @@ public class UnscaledPlotFunction extends AnalysisFunction {
 			// Scale axes
 			visManager.getWidthVsTime().limitAutoscaleX(-1, Double.NaN);
 			visManager.getWidthVsTime().limitAutoscaleY(0, Double.NaN);
-			// Delegate plotting to visManager
-			visManager.unscaledAvgWidthPlot(lengthList, data, nPoints);
+			// Stream all data, ordering by length to ensure all models are plotted
+			Cursor cursor = db.stream(
+				"SELECT * FROM " + AnalysisControl.DB_TABLE_AVERAGES +
+				" WHERE " + mgi.sqlWhereClause() +
+				" ORDER BY L DESC",
+				mgi.sqlParameters()
+			);
+			if (cursor == null) {
+				control.showMessage("Null result set returned");
+			}
+			else {
+				try (Cursor data = cursor) {
+					// Delegate plotting to visManager
+					visManager.unscaledAvgWidthPlot(lengthList, data.getResultSet(), nPoints);
+				}
+			}
 
 		} catch (SQLException sqle) {
 			sqle.printStackTrace();
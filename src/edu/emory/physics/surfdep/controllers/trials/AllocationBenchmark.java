@@ -0,0 +1,80 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers.trials;
+
+import edu.emory.physics.surfdep.models.Deposition;
+import edu.emory.physics.surfdep.models.DepositionFactory;
+import edu.emory.physics.surfdep.utils.PageStoreFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+/**
+ * AllocationBenchmark.java
+ * 
+ * Checks that the steady-state step loop of a model does
+ * not allocate. Warms the model up, then counts the bytes
+ * this thread allocates over many calls of step(). Widths
+ * are kept in memory so that no page is pushed while it
+ * counts, and the count is expected to be 0. Exits with
+ * status 1 otherwise.
+ * 
+ * @author Tyler Parsons
+ */
+public class AllocationBenchmark {
+
+	/**
+	 * Main method.
+	 * @param args	[steps [warmupSteps [modelType]]]
+	 */
+	public static void main(String[] args) {
+		
+		long steps = args.length > 0 ? Long.parseLong(args[0]) : 1L << 22;
+		long warmupSteps = args.length > 1 ? Long.parseLong(args[1]) : 1L << 20;
+		String modelType = args.length > 2 ? args[2] : "BallisticDeposition";
+		
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("Allocation counting is not supported by this JVM");
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		Deposition model = new DepositionFactory().createDeposition(modelType);
+		HashMap<String, Double> params = model.parameters();
+		params.put("widthBackend", (double)PageStoreFactory.MEMORY);
+		model.init(params);
+		
+		// Let the JIT compile the loop before counting
+		for (long i = 0; i < warmupSteps; i++)
+			model.step();
+		
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (long i = 0; i < steps; i++)
+			model.step();
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		
+		System.out.printf("%d bytes allocated over %d steps (%.4f bytes/step)%n",
+				allocated, steps, (double)allocated/steps);
+		model.deleteWidth();
+		if (allocated > 0)
+			System.exit(1);
+		
+	}
+	
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers.trials;
+
+import edu.emory.physics.surfdep.controllers.DataManager;
+import edu.emory.physics.surfdep.utils.EmbeddedDBArray.DBOperationCallback;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * BatchRunner.java
+ * 
+ * Command line entry point for headless batch runs. Reads
+ * trial parameters from a txt file in the same format as
+ * {@link TrialRunner}, and runs the trials on a {@link
+ * TrialExecutor}. No AWT, Swing or OSP classes are loaded,
+ * so it can run on machines without a display.
+ * 
+ * Usage: BatchRunner [paramFile [parallelism]]
+ * 
+ * @author Tyler Parsons
+ */
+public class BatchRunner {
+
+	/**
+	 * Main method.
+	 * @param args	optional path of the trial parameter file,
+	 * 				followed by the number of trials to run at
+	 * 				once, which overrides "parallelism" in the
+	 * 				file
+	 */
+	public static void main(String[] args) {
+		
+		String filePath = args.length > 0 ? args[0]
+						: DepositionControl.DIR_DATA_ROOT + "trial_params.txt";
+		
+		// Read parameters
+		HashMap<String, Double> numericParams = new HashMap<>();
+		HashMap<String, String> textParams = new HashMap<>();
+		try {
+			readParameters(filePath, numericParams, textParams);
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+			return;
+		}
+		if (args.length > 1)
+			numericParams.put("parallelism", Double.parseDouble(args[1]));
+		
+		run(textParams.get("modelType"), numericParams);
+		
+	}
+	
+	/**
+	 * Reads tab separated key value pairs, one per line,
+	 * into numericParams if the value is a number and
+	 * into textParams otherwise.
+	 */
+	public static void readParameters(
+		String filePath,
+		HashMap<String, Double> numericParams,
+		HashMap<String, String> textParams
+	) throws FileNotFoundException {
+		
+		Scanner in = new Scanner(new File(filePath));
+		while (in.hasNext()) {
+			String line = in.nextLine();
+			System.out.println(line);
+			String[] kvPair = line.split("\t");
+			try {
+				numericParams.put(kvPair[0], Double.parseDouble(kvPair[1]));
+			} catch (NumberFormatException nfe) {
+				textParams.put(kvPair[0], kvPair[1]);
+			}
+		}
+		in.close();
+		
+	}
+	
+	/**
+	 * Runs all trials on a {@link TrialExecutor}, with
+	 * "parallelism" trials, or one if absent, at once,
+	 * each stepped by "threadsPerTrial" threads, or one
+	 * if absent.
+	 */
+	public static void run(String modelType, HashMap<String, Double> numericParams) {
+		
+		Double parallelism = numericParams.remove("parallelism");
+		Double threadsPerTrial = numericParams.remove("threadsPerTrial");
+		int numTrials = numericParams.remove("numTrials").intValue();
+		double averageFactor = numericParams.containsKey("averageFactor")
+							 ? numericParams.remove("averageFactor").doubleValue() : 0;
+		
+		// Remove control specific parameters
+		numericParams.remove("clearMod");
+		numericParams.remove("plotAllMod");
+		numericParams.remove("stepsPerDisplay");
+		numericParams.remove("Enable Visualizations");
+		
+		DataManager dataManager = new DataManager(
+			DepositionControl.DIR_DATA_ROOT + "id_log.txt",
+			DepositionControl.DIR_DATA_ROOT + "deposition_data.txt",
+			DepositionControl.DIR_DATA_ROOT + "deposition_data.csv",
+			onReplay
+		);
+		dataManager.startTrial();
+		
+		try {
+			new TrialExecutor(
+				modelType,
+				averageFactor,
+				parallelism != null ? parallelism.intValue() : 1,
+				threadsPerTrial != null ? threadsPerTrial.intValue() : 1,
+				dataManager
+			).runTrials(numTrials, numericParams);
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+		dataManager.sync();
+		
+	}
+	
+	/**
+	 * Reports the replay of output left by an earlier run
+	 * on the console, in place of the alert dialogs of
+	 * {@link DepositionControl}.
+	 */
+	private static DBOperationCallback onReplay = new DBOperationCallback() {
+		
+		@Override
+		public void onOperationStarted() {
+			System.out.println("Writing output journaled by an earlier run.");
+		}
+		
+		@Override
+		public void onOperationCompleted(long opTime) {
+			System.out.println("Replay completed in "+(opTime/1000L)+" s.");
+		}
+		
+	};
+	
+}
@@ -28,6 +28,10 @@ import edu.emory.physics.surfdep.utils.LinearRegression.Function;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
 import org.opensourcephysics.controls.AbstractSimulation;
 
 /**
@@ -60,6 +64,12 @@ public class DepositionControl extends AbstractSimulation {
 	static int plotAllMod;
 	static double averageFactor;
 	
+	// Maximum depositions made per call to doStep
+	final static long STEPS_PER_BATCH = 4096;
+	
+	// Fraction of model height at which simulation stops
+	final static double MAX_HEIGHT_FRACTION = 0.9;
+	
 	// Driectory in which simulation data is stored
 	final static String DIR_DATA_ROOT = "data\\";
 	
@@ -95,7 +105,8 @@ public class DepositionControl extends AbstractSimulation {
 		dataManager = new DataManager(
 			DIR_DATA_ROOT + "id_log.txt",
 			DIR_DATA_ROOT + "deposition_data.txt",
-			DIR_DATA_ROOT + "deposition_data.csv"
+			DIR_DATA_ROOT + "deposition_data.csv",
+			onReplay
 		);
 		dataManager.startTrial();
 	}
@@ -103,6 +114,7 @@ public class DepositionControl extends AbstractSimulation {
 	public void initialize() {
 		
 		//Create a new model for each simulation
+		releaseModel();
 		model = instantiateModel();
 		
 		// Setup plots
@@ -114,7 +126,9 @@ public class DepositionControl extends AbstractSimulation {
 			params.put(name, control.getDouble(name));
 		}
 		params.put("modelId", (double)++modelId);
+		model.setSeriesId(dataManager.getSeriesId(modelId));
 		model.init(params);
+		model.setAverageHeightLimit(MAX_HEIGHT_FRACTION*model.getHeight());
 		
 		// Enable database operation alerts
 		model.registerDBOperationCallbacks(onPush, onPull);
@@ -127,6 +141,7 @@ public class DepositionControl extends AbstractSimulation {
 	public void initialize(HashMap<String, Double> params) {
 		
 		//Create a new model for each simulation
+		releaseModel();
 		model = instantiateModel();
 		
 		// Setup plots
@@ -136,8 +151,10 @@ public class DepositionControl extends AbstractSimulation {
 		Double stepsPerDisplay = params.remove("stepsPerDisplay");
 		
 		//Set Parameters
+		model.setSeriesId(dataManager.getSeriesId(modelId));
 		params.put("modelId", (double)modelId++);
 		model.init(params);
+		model.setAverageHeightLimit(MAX_HEIGHT_FRACTION*model.getHeight());
 		
 		// Enable database operation alerts
 		model.registerDBOperationCallbacks(onPush, onPull);
@@ -189,7 +206,7 @@ public class DepositionControl extends AbstractSimulation {
 	protected void doStep() {
 		
 		// Stop before model reaches maximum height
-		if (model.getAverageHeight() > 0.9*model.getHeight()) {
+		if (model.getAverageHeight() > MAX_HEIGHT_FRACTION*model.getHeight()) {
 			stopSimulation();
 			return;
 		}
@@ -199,10 +216,17 @@ public class DepositionControl extends AbstractSimulation {
 //			return;
 //		}
 		
+		// Run a batch of depositions up to the next time at
+		// which a point may be plotted. The model returns
+		// early if an average is due before then.
+		long t = model.getTime();
+		long mod = visManager.dynamicPointModulus(t, model.getLength());
+		long nextPlot = (Math.floorDiv(t, mod) + 1)*mod;
+		
 		// Catch and report any exceptions without 
 		// losing simulation to runtime errors
 		try {
-			model.step();
+			model.stepMany(Math.min(STEPS_PER_BATCH, nextPlot - t));
 		} catch(ArrayIndexOutOfBoundsException e) {
 			e.printStackTrace();
 			stopSimulation();
@@ -213,8 +237,8 @@ public class DepositionControl extends AbstractSimulation {
 		// given by point modulus, which is intended
 		// to prevent overflow of points on the plot
 		// frame
-		long t = model.getTime();
-		long mod = visManager.dynamicPointModulus(t, model.getLength());
+		t = model.getTime();
+		mod = visManager.dynamicPointModulus(t, model.getLength());
 		if (t % mod == 0) {
 			visManager.logPlotWidth(
 				model.getLength(),
@@ -224,7 +248,7 @@ public class DepositionControl extends AbstractSimulation {
 		}
 		
 		// Determine whether or not to take average
-		if (model.takeAverage(t)) {
+		if (model.isAverageDue()) {
 			dataManager.updateAverages(model);
 		}
 				
@@ -236,6 +260,9 @@ public class DepositionControl extends AbstractSimulation {
 		if (!exists(model))
 			models.add(model);
 		
+		// Write averages accumulated while running
+		dataManager.flushAverages();
+		
 		//Request input of t_cross and implement input callback
 		//to analyze model
 		
@@ -258,14 +285,27 @@ public class DepositionControl extends AbstractSimulation {
 	}
 	
 	/**
-	 * Dereferences all models and suggests garbage collection.
+	 * Deletes the widths of and dereferences all models,
+	 * then suggests garbage collection.
 	 */
 	public void clearMemory() {
+		releaseModel();
+		for (Deposition m: models)
+			m.deleteWidth();
 		models.clear();
 		model = null;
 		System.gc();
 	}
 	
+	/**
+	 * Deletes the width of the current model unless
+	 * it has been kept for later analysis.
+	 */
+	private void releaseModel() {
+		if (model != null && !exists(model))
+			model.deleteWidth();
+	}
+	
 	public void setAnalysisCallback(Runnable callback) {
 		analysisCallback = callback;
 	}
@@ -311,13 +351,17 @@ public class DepositionControl extends AbstractSimulation {
 		if (control.getBoolean("Save Data")) {
 			dataManager.saveAll(model, addlParams);
 			String fileName = "L"+model.getLength()+"H"+model.getHeight()+"_"+modelId;
-			dataManager.saveImage(visManager.getLattice(), "lattices", fileName + ".jpeg");
-			dataManager.saveImage(visManager.getWidthVsTime(), "plots", fileName + ".jpeg");
+			visManager.saveImage(visManager.getLattice(),
+				dataManager.getTrialPath("lattices", fileName + ".jpeg"));
+			visManager.saveImage(visManager.getWidthVsTime(),
+				dataManager.getTrialPath("plots", fileName + ".jpeg"));
 		}
 		if (control.getBoolean("Plot All")) {
 			plotAll();
-			dataManager.saveImage(visManager.getWidthVsTime(), ".", "masterPlot_"+modelId+".jpeg");
-			dataManager.saveImage(visManager.getWidthVsLength(), ".", "alphaPlot_"+modelId+".jpeg");
+			visManager.saveImage(visManager.getWidthVsTime(),
+				dataManager.getTrialPath(".", "masterPlot_"+modelId+".jpeg"));
+			visManager.saveImage(visManager.getWidthVsLength(),
+				dataManager.getTrialPath(".", "alphaPlot_"+modelId+".jpeg"));
 		}
 		
 		// Invoke callback if one has been specified
@@ -365,6 +409,12 @@ public class DepositionControl extends AbstractSimulation {
  * DB Operation Callbacks *
  **************************/
 
+	/*
+	 * Callbacks fire on the thread doing the DB operation,
+	 * so dialogs are created, updated and disposed on the
+	 * event dispatch thread.
+	 */
+
 	private AlertDialog dbPushAlert;
 	private AlertDialog dbPullAlert;
 	
@@ -372,26 +422,22 @@ public class DepositionControl extends AbstractSimulation {
 
 		@Override
 		public void onOperationStarted() {
-			dbPushAlert = new AlertDialog(
-				"Push Alert",
-				"Pushing records from memory to local database.\nThis may take several minutes."
-			);
+			SwingUtilities.invokeLater( () -> {
+				dbPushAlert = new AlertDialog(
+					"Push Alert",
+					"Pushing records from memory to local database.\nThis may take several minutes."
+				);
+			});
 		}
 
 		@Override
 		public void onOperationCompleted(final long opTime) {
-			
-			dbPushAlert.showMessage(
-				"Push completed in "+(opTime/1000L)+" s."
-			);
-			
-			new Thread( () -> {
-				try {
-					Thread.sleep(5000L);
-				} catch (InterruptedException ie) {}
-				
-				dbPushAlert.dispose();				
-			}).run();
+			SwingUtilities.invokeLater( () -> {
+				dbPushAlert.showMessage(
+					"Push completed in "+(opTime/1000L)+" s."
+				);
+				disposeLater(dbPushAlert::dispose);
+			});
 		}
 		
 	};
@@ -400,26 +446,47 @@ public class DepositionControl extends AbstractSimulation {
 
 		@Override
 		public void onOperationStarted() {
-			dbPullAlert = new AlertDialog(
-				"Pull Alert",
-				"Pulling records from memory to local database.\nThis may take several minutes."
-			);
+			SwingUtilities.invokeLater( () -> {
+				dbPullAlert = new AlertDialog(
+					"Pull Alert",
+					"Pulling records from memory to local database.\nThis may take several minutes."
+				);
+			});
 		}
 
 		@Override
 		public void onOperationCompleted(final long opTime) {
-			
-			dbPullAlert.showMessage(
-				"Pull completed in "+(opTime/1000L)+" s."
-			);
-			
-			new Thread( () -> {
-				try {
-					Thread.sleep(5000L);
-				} catch (InterruptedException ie) {}
-				
-				dbPullAlert.dispose();				
-			}).run();
+			SwingUtilities.invokeLater( () -> {
+				dbPullAlert.showMessage(
+					"Pull completed in "+(opTime/1000L)+" s."
+				);
+				disposeLater(dbPullAlert::dispose);
+			});
+		}
+		
+	};
+	
+	/**
+	 * Runs dispose on the event dispatch thread after 5 s.
+	 */
+	private static void disposeLater(Runnable dispose) {
+		Timer timer = new Timer(5000, (e) -> dispose.run());
+		timer.setRepeats(false);
+		timer.start();
+	}
+	
+	private DBOperationCallback onReplay = new DBOperationCallback() {
+
+		@Override
+		public void onOperationStarted() {}
+
+		@Override
+		public void onOperationCompleted(final long opTime) {
+			SwingUtilities.invokeLater( () -> {
+				JOptionPane.showMessageDialog(null,
+					"Output journaled by an earlier run was written in "+(opTime/1000L)+" s."
+				);
+			});
 		}
 		
 	};
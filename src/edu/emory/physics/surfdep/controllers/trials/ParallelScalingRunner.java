@@ -0,0 +1,83 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers.trials;
+
+import edu.emory.physics.surfdep.models.Deposition;
+import edu.emory.physics.surfdep.models.DepositionFactory;
+import edu.emory.physics.surfdep.models.ParallelDeposition;
+import edu.emory.physics.surfdep.utils.PageStoreFactory;
+
+import java.util.HashMap;
+
+/**
+ * ParallelScalingRunner.java
+ * 
+ * Reports how the throughput of a {@link ParallelDeposition}
+ * scales with its thread count, depositing the same number
+ * of monolayers on a fresh model for 1, 2, 4, ... threads.
+ * Models use the height time scale, whose events are one
+ * monolayer apart, and keep widths in memory, so that
+ * mostly deposition is timed.
+ * 
+ * @author Tyler Parsons
+ */
+public class ParallelScalingRunner {
+
+	/**
+	 * Main method.
+	 * @param args	[L [monolayers [maxThreads [modelType]]]]
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		
+		int L = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+		int monolayers = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+										 : Runtime.getRuntime().availableProcessors();
+		String modelType = args.length > 3 ? args[3] : "BallisticDeposition";
+		
+		DepositionFactory factory = new DepositionFactory();
+		double baseline = 0;
+		
+		System.out.println("threads\tsteps/sec\tspeedup");
+		for (int n = 1; n <= maxThreads; n *= 2) {
+			
+			Deposition model = factory.createDeposition(modelType);
+			HashMap<String, Double> params = model.parameters();
+			params.put("L", (double)L);
+			// Leave headroom for the porous growth of the surface
+			params.put("H", 8*monolayers + model.getParameter("dH"));
+			// Keep widths in memory, so that no DB I/O is timed
+			params.put("widthBackend", (double)PageStoreFactory.MEMORY);
+			model.setHavgTimeScale();
+			model.init(params, 8*monolayers + 1);
+			
+			ParallelDeposition engine = new ParallelDeposition(model, n);
+			long steps = (long)monolayers*L;
+			long start = System.nanoTime();
+			for (long made = 0; made < steps; )
+				made += engine.stepMany(steps - made);
+			long runTime = System.nanoTime() - start;
+			engine.close();
+			
+			double stepsPerSecond = steps*1e9/runTime;
+			if (n == 1)
+				baseline = stepsPerSecond;
+			System.out.printf("%d\t%.4g\t%.2f%n", n, stepsPerSecond, stepsPerSecond/baseline);
+		}
+		
+	}
+	
+}
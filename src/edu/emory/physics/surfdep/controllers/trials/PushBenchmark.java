@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers.trials;
+
+import edu.emory.physics.surfdep.utils.DoubleCodec;
+import edu.emory.physics.surfdep.utils.DoubleCodecFactory;
+import edu.emory.physics.surfdep.utils.EmbeddedDBArray;
+import edu.emory.physics.surfdep.utils.MySQLPageStore;
+import edu.emory.physics.surfdep.utils.PageStore;
+import edu.emory.physics.surfdep.utils.RandomSource;
+import edu.emory.physics.surfdep.utils.RandomSourceFactory;
+
+/**
+ * PushBenchmark.java
+ * 
+ * Compares the JDBC batch and LOAD DATA push paths of the
+ * MySQL page store, writing the same encoded page of a
+ * synthetic width series several times through each.
+ * Uses series ids -1 and -2, which it clears when done.
+ * 
+ * @author Tyler Parsons
+ */
+public class PushBenchmark {
+
+	/**
+	 * Main method.
+	 * @param args	[pageSize [repetitions [codec]]]
+	 */
+	public static void main(String[] args) {
+		
+		int pageSize = args.length > 0 ? Integer.parseInt(args[0]) : (int)EmbeddedDBArray.MAX_ARRAY_SIZE;
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int codecType = args.length > 2 ? Integer.parseInt(args[2]) : DoubleCodecFactory.QUANTIZED;
+		
+		// A slowly growing, noisy width series
+		RandomSource rng = new RandomSourceFactory()
+				.createRandomSource(RandomSourceFactory.XOROSHIRO128PLUS, 1);
+		double[] page = new double[pageSize];
+		for (int t = 0; t < pageSize; t++)
+			page[t] = Math.pow(t + 1, 1.0/3.0) + 0.01*rng.nextDouble();
+		
+		// Encode once, so that only the pushes are timed
+		DoubleCodec codec = new DoubleCodecFactory().createDoubleCodec(codecType, 1e-6);
+		int chunks = (pageSize + EmbeddedDBArray.CHUNK_SIZE - 1)/EmbeddedDBArray.CHUNK_SIZE;
+		int[] n = new int[chunks];
+		byte[][] data = new byte[chunks][];
+		long bytes = 0;
+		for (int i = 0; i < chunks; i++) {
+			n[i] = Math.min(EmbeddedDBArray.CHUNK_SIZE, pageSize - i*EmbeddedDBArray.CHUNK_SIZE);
+			data[i] = codec.encode(page, i*EmbeddedDBArray.CHUNK_SIZE, n[i]);
+			bytes += data[i].length;
+		}
+		System.out.println(pageSize+" values in "+chunks+" chunks of "+bytes+" bytes");
+		
+		System.out.println("path\tms/push\tMB/s");
+		String[] names = {"batch", "load"};
+		PageStore[] stores = {new MySQLPageStore(-1, false), new MySQLPageStore(-2, true)};
+		for (int s = 0; s < stores.length; s++) {
+			stores[s].clear();
+			stores[s].writeChunks(0, codecType, n, data);	// Warm up
+			long start = System.nanoTime();
+			for (int r = 0; r < repetitions; r++)
+				stores[s].writeChunks(0, codecType, n, data);
+			double ms = (System.nanoTime() - start)/1e6/repetitions;
+			System.out.printf("%s\t%.1f\t%.1f%n", names[s], ms, bytes/1e3/ms);
+			stores[s].clear();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers.trials;
+
+import edu.emory.physics.surfdep.utils.RandomSource;
+import edu.emory.physics.surfdep.utils.RandomSourceFactory;
+import edu.emory.physics.surfdep.utils.SurfaceReductions;
+import edu.emory.physics.surfdep.utils.SurfaceReductionsFactory;
+
+/**
+ * ReductionBenchmark.java
+ * 
+ * Compares the Vector API {@link SurfaceReductions} with
+ * the scalar loops on random surfaces of length 256 up to
+ * maxL, reporting the time per column of each reduction
+ * and the speedup. Must be run with the src-vector classes
+ * on the classpath and
+ * 		--add-modules jdk.incubator.vector
+ * 
+ * @author Tyler Parsons
+ */
+public class ReductionBenchmark {
+
+	private final static String[] NAMES = {"sum", "sumSq", "min", "max"};
+	
+	/**
+	 * Main method.
+	 * @param args	[maxL [columnsPerTiming]]
+	 */
+	public static void main(String[] args) {
+		
+		int maxL = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		long work = args.length > 1 ? Long.parseLong(args[1]) : 1L << 28;
+		
+		SurfaceReductionsFactory factory = new SurfaceReductionsFactory();
+		SurfaceReductions scalar = factory.createSurfaceReductions(SurfaceReductionsFactory.SCALAR);
+		SurfaceReductions vector = factory.createSurfaceReductions(SurfaceReductionsFactory.VECTOR);
+		RandomSource rng = new RandomSourceFactory()
+				.createRandomSource(RandomSourceFactory.XOROSHIRO128PLUS, RandomSourceFactory.generateSeed());
+		
+		System.out.println("L\treduction\tscalar ns/col\tvector ns/col\tspeedup");
+		for (long l = 256; l <= maxL; l = (l*4 > maxL && l < maxL) ? maxL : l*4) {
+			
+			int L = (int)l;
+			int[] height = new int[L];
+			rng.nextInts(height, L, 1 << 20);
+			int reps = (int)Math.max(1, work/L);
+			
+			for (int r = 0; r < NAMES.length; r++) {
+				if (reduce(scalar, r, height) != reduce(vector, r, height))
+					throw new IllegalStateException(NAMES[r]+" mismatch at L = "+L);
+				// Warm up both before timing either
+				time(scalar, r, height, reps);
+				time(vector, r, height, reps);
+				double s = time(scalar, r, height, reps)/((double)reps*L);
+				double v = time(vector, r, height, reps)/((double)reps*L);
+				System.out.printf("%d\t%s\t%.3f\t%.3f\t%.2f%n", L, NAMES[r], s, v, s/v);
+			}
+		}
+		
+	}
+	
+	private static long reduce(SurfaceReductions reductions, int r, int[] a) {
+		switch (r) {
+		case 0:		return reductions.sum(a, 0, a.length);
+		case 1:		return reductions.sumOfSquares(a, 0, a.length);
+		case 2:		return reductions.min(a, 0, a.length);
+		default:	return reductions.max(a, 0, a.length);
+		}
+	}
+	
+	/**
+	 * @return nanoseconds taken for reps reductions
+	 */
+	private static long time(SurfaceReductions reductions, int r, int[] a, int reps) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < reps; i++)
+			sink += reduce(reductions, r, a);
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42)
+			System.out.print("");
+		return elapsed;
+	}
+	
+}
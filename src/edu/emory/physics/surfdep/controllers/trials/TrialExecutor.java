@@ -0,0 +1,266 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.controllers.trials;
+
+import edu.emory.physics.surfdep.controllers.DataManager;
+import edu.emory.physics.surfdep.models.Deposition;
+import edu.emory.physics.surfdep.models.DepositionFactory;
+import edu.emory.physics.surfdep.models.ParallelDeposition;
+import edu.emory.physics.surfdep.utils.LinearRegression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * TrialExecutor.java
+ * 
+ * Runs an ensemble of independent trials on a bounded
+ * thread pool. Each trial owns its {@link Deposition}
+ * and a {@link DataManager} sink writing to its own
+ * files, and is driven by a plain stepMany loop with
+ * no visualization or user input. Trials of very large
+ * L may each be run on several threads by a {@link
+ * ParallelDeposition}.
+ * 
+ * @author Tyler Parsons
+ */
+public class TrialExecutor {
+
+	private final DepositionFactory depositionFactory;
+	private final String modelType;
+	private final double averageFactor;
+	private final int parallelism;
+	private final int threadsPerTrial;
+	
+	/**
+	 * Ensemble-level data manager, from which per-trial
+	 * sinks are created.
+	 */
+	private final DataManager dataManager;
+	
+	/**
+	 * Keys of analysis parameters, which are removed from
+	 * the trial parameters before they are passed to models.
+	 */
+	public final static String[] ANALYSIS_KEYS = {
+		"t_0", "t_x1", "t_x2"
+	};
+	
+	/**
+	 * @param modelType	type of model passed to {@link DepositionFactory}
+	 * @param averageFactor	logarithmic time scale factor, or 0 for
+	 * 						the default time scale
+	 * @param parallelism	maximum number of trials run at once
+	 * @param threadsPerTrial	number of threads stepping each
+	 * 							trial, 1 to step it serially
+	 * @param dataManager	ensemble-level data manager, whose trial
+	 * 						has been started
+	 */
+	public TrialExecutor(
+		String modelType,
+		double averageFactor,
+		int parallelism,
+		int threadsPerTrial,
+		DataManager dataManager
+	) {
+		this.modelType = modelType;
+		this.averageFactor = averageFactor;
+		this.parallelism = parallelism;
+		this.threadsPerTrial = threadsPerTrial;
+		this.dataManager = dataManager;
+		depositionFactory = new DepositionFactory();
+	}
+	
+	/**
+	 * Runs numTrials trials, blocking until all have finished,
+	 * and then saves ensemble quantities such as alpha.
+	 * 
+	 * @param numTrials	number of trials, less than
+	 * 					{@link DataManager#MODELS_PER_TRIAL}
+	 * @param params	model parameters, plus the analysis
+	 * 					parameters t_0, t_x1 and t_x2 as times
+	 * @return completed models, ordered by modelId, whose
+	 * 			widths have already been deleted
+	 * @throws IllegalArgumentException if there are too many
+	 * 			trials for their width series ids to be unique
+	 */
+	public List<Deposition> runTrials(int numTrials, HashMap<String, Double> params)
+		throws InterruptedException, ExecutionException, IllegalArgumentException {
+		
+		// Model ids run from 1 to numTrials
+		if (numTrials >= DataManager.MODELS_PER_TRIAL)
+			throw new IllegalArgumentException(
+				numTrials+" trials exceed the "+(DataManager.MODELS_PER_TRIAL - 1)+" allowed at once"
+			);
+		
+		// Separate analysis parameters from model parameters
+		HashMap<String, Double> modelParams = new HashMap<>(params);
+		final HashMap<String, Double> analysisParams = new HashMap<>();
+		for (String key: ANALYSIS_KEYS) {
+			Double value = modelParams.remove(key);
+			analysisParams.put(key, value != null ? value : 0);
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		List<Future<Deposition>> futures = new ArrayList<>();
+		long start = System.currentTimeMillis();
+		
+		try {
+			for (int id = 1; id <= numTrials; id++) {
+				futures.add(pool.submit(new Trial(id, modelParams, analysisParams)));
+			}
+			
+			List<Deposition> models = new ArrayList<>();
+			for (Future<Deposition> future: futures) {
+				models.add(future.get());
+			}
+			
+			System.out.println(	"Ran "+numTrials+" trials on "+parallelism+" threads in "
+								+(System.currentTimeMillis()-start)+"ms");
+			
+			saveEnsemble(models);
+			return models;
+			
+		} finally {
+			pool.shutdownNow();
+			// Write the averages of all trials at once
+			dataManager.flushAverages();
+		}
+	}
+	
+	/**
+	 * Calculates and saves quantities over all models.
+	 */
+	private void saveEnsemble(List<Deposition> models) {
+		
+		if (models.isEmpty())
+			return;
+		
+		double beta_sum = 0;
+		for (Deposition m: models)
+			beta_sum += m.getBeta();
+		
+		// Regression of lnw_avg vs lnL
+		LinearRegression lnw_vs_lnL = new LinearRegression(
+			(double x) -> {
+				return Math.log(models.get((int)x).getLength());
+			},
+			(double x) -> {
+				return models.get((int)x).getSaturatedLnw_avg();
+			},
+			0, (double)models.size()-1, 1
+		);
+		
+		HashMap<String, Double> ensemble = new HashMap<String, Double>();
+		ensemble.put("trials", (double)models.size());
+		ensemble.put("beta_avg", beta_sum/models.size());
+		ensemble.put("alpha", lnw_vs_lnL.m());
+		ensemble.put("R2", lnw_vs_lnL.R2());
+		dataManager.saveToTxt(ensemble);
+	}
+	
+	private Deposition instantiateModel() {
+		if (averageFactor != 0)
+			return depositionFactory.createDeposition(modelType, averageFactor);
+		else
+			return depositionFactory.createDeposition(modelType);
+	}
+	
+	
+/******************
+ * Nested Classes *
+ ******************/
+	
+	/**
+	 * A single trial, which runs a model to its height limit,
+	 * analyzes it and saves the results through its own sink.
+	 */
+	private class Trial implements Callable<Deposition> {
+		
+		private final int modelId;
+		private final HashMap<String, Double> params;
+		private final HashMap<String, Double> analysisParams;
+		
+		Trial(int modelId, HashMap<String, Double> params, HashMap<String, Double> analysisParams) {
+			this.modelId = modelId;
+			this.params = new HashMap<>(params);
+			this.analysisParams = analysisParams;
+		}
+
+		@Override
+		public Deposition call() throws InterruptedException {
+			
+			Deposition model = instantiateModel();
+			params.put("modelId", (double)modelId);
+			model.setSeriesId(dataManager.getSeriesId(modelId));
+			model.init(params);
+			
+			double maxHeight = DepositionControl.MAX_HEIGHT_FRACTION*model.getHeight();
+			model.setAverageHeightLimit(maxHeight);
+			
+			DataManager sink = dataManager.createSink("model"+modelId);
+			
+			if (threadsPerTrial > 1) {
+				ParallelDeposition engine = new ParallelDeposition(model, threadsPerTrial);
+				try {
+					while (model.getAverageHeight() <= maxHeight) {
+						engine.stepMany(DepositionControl.STEPS_PER_BATCH);
+						if (model.isAverageDue())
+							sink.updateAverages(model);
+					}
+				} finally {
+					engine.close();
+				}
+			}
+			else {
+				while (model.getAverageHeight() <= maxHeight) {
+					model.stepMany(DepositionControl.STEPS_PER_BATCH);
+					if (model.isAverageDue())
+						sink.updateAverages(model);
+				}
+			}
+			
+			int t_0 = analysisParams.get("t_0").intValue();
+			int t_x1 = analysisParams.get("t_x1").intValue();
+			int t_x2 = analysisParams.get("t_x2").intValue();
+			model.calculateBeta(t_0, t_x1);
+			model.calculateSaturatedLnw_avg(t_x2);
+			
+			HashMap<String, Double> addlParams = new HashMap<String, Double>();
+			addlParams.put("h_avg", model.getAverageHeight());
+			addlParams.put("w", model.getWidth(model.getScaledTime()));
+			addlParams.put("t", (double)model.getTime());
+			addlParams.put("t_0", (double)t_0);
+			addlParams.put("t_x1", (double)t_x1);
+			addlParams.put("t_x2", (double)t_x2);
+			addlParams.put("lnw_avg", model.getSaturatedLnw_avg());
+			addlParams.put("beta", model.getBeta());
+			sink.saveAll(model, addlParams);
+			
+			// Results are saved, release the stored width
+			model.deleteWidth();
+			return model;
+		}
+		
+	}
+	
+}
@@ -19,10 +19,8 @@ import edu.emory.physics.surfdep.controllers.supplier.AsyncSupplier;
 import edu.emory.physics.surfdep.controllers.supplier.CachedInputSupplier;
 import edu.emory.physics.surfdep.controllers.supplier.InputDialogSupplier;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
-import java.util.Scanner;
 
 import org.opensourcephysics.controls.SimulationControl;
 
@@ -43,31 +41,29 @@ public class TrialRunner {
 	public static void main(String[] args) {
 		
 		// Read parameters
-		String filePath = DepositionControl.DIR_DATA_ROOT + "trial_params.txt";
-		Scanner in = null;
+		final HashMap<String, Double> numericParams = new HashMap<>();
+		HashMap<String, String> textParams = new HashMap<>();
 		try {
-			in = new Scanner(new File(filePath));
+			BatchRunner.readParameters(
+				DepositionControl.DIR_DATA_ROOT + "trial_params.txt",
+				numericParams,
+				textParams
+			);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 			return;
 		}
 		
-		final HashMap<String, Double> numericParams = new HashMap<>();
-		HashMap<String, String> textParams = new HashMap<>();
-		while (in.hasNext()) {
-			String line = in.nextLine();
-			System.out.println(line);
-			String[] kvPair = line.split("\t");
-			try {
-				numericParams.put(kvPair[0], Double.parseDouble(kvPair[1]));
-			} catch (NumberFormatException nfe) {
-				textParams.put(kvPair[0], kvPair[1]);
-			}
+		String modelType = textParams.get("modelType");
+		
+		// Run trials concurrently without visualizations
+		// if a degree of parallelism is given
+		if (numericParams.containsKey("parallelism")) {
+			BatchRunner.run(modelType, numericParams);
+			return;
 		}
-		in.close();
 		
 		// Create control
-		String modelType = textParams.get("modelType");
 		final DepositionControl control = new DepositionControl(modelType);
 		
 		// Determine number of trials to run
@@ -35,27 +35,20 @@ public class BallisticDeposition extends Deposition {
 	}
 
 	/**
-	 * Selects a column at random and deposits
-	 * an atom there, letting it fall and bond
-	 * with the the first horizontally or ver-
-	 * tically adjacent neighbor.
+	 * Deposits an atom at the randomly selected
+	 * column, letting it fall and bond with the
+	 * the first horizontally or vertically adja-
+	 * cent neighbor.
 	 */
 	@Override
-	protected Point deposit() {
+	protected long deposit(int col) {
 		
-		int col = (int)(Math.random()*L);
 		int h = localMaxHeight(col - 1, col + 1);
 		if (getBit(col, h) == 1 && isValid(col, h+1)) {
-			Point p = new Point();
-			p.x = col;
-			p.y = h+1;
-			return p;
+			return site(col, h+1);
 		}
 		else {
-			Point p = new Point();
-			p.x = col;
-			p.y = h;
-			return p;
+			return site(col, h);
 		}
 	}
 
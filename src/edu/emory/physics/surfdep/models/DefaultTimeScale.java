@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models;
+
+/**
+ * Measures width after every deposition and
+ * averages every mod depositions.
+ * 
+ * @author Tyler Parsons
+ */
+public class DefaultTimeScale extends TimeScale {
+
+	private final long mod;
+	
+	public DefaultTimeScale(long mod) {
+		this.mod = mod;
+	}
+	
+	@Override
+	public boolean measuresEveryStep() {
+		return true;
+	}
+
+	@Override
+	public long nextEventTime(long t) {
+		return (Math.floorDiv(t, mod) + 1)*mod;
+	}
+
+	@Override
+	public long nextEventHeightSum(long heightSum, int L) {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public long scaledTime(long t) {
+		return t;
+	}
+
+}
@@ -16,20 +16,23 @@
 package edu.emory.physics.surfdep.models;
 
 
+import edu.emory.physics.surfdep.models.lattice.LatticeStore;
+import edu.emory.physics.surfdep.models.lattice.LatticeStoreFactory;
+import edu.emory.physics.surfdep.utils.DoubleCodecFactory;
+import edu.emory.physics.surfdep.utils.DoubleSeries;
+import edu.emory.physics.surfdep.utils.DoubleSeriesFactory;
 import edu.emory.physics.surfdep.utils.EmbeddedDBArray;
 import edu.emory.physics.surfdep.utils.EmbeddedDBArray.DBOperationCallback;
 import edu.emory.physics.surfdep.utils.LinearRegression;
+import edu.emory.physics.surfdep.utils.PageStoreFactory;
+import edu.emory.physics.surfdep.utils.RandomSource;
+import edu.emory.physics.surfdep.utils.RandomSourceFactory;
+import edu.emory.physics.surfdep.utils.SurfaceReductions;
+import edu.emory.physics.surfdep.utils.SurfaceReductionsFactory;
 
-import java.awt.Color;
-import java.awt.Graphics;
 import java.lang.Math;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
-
-import org.opensourcephysics.display.Drawable;
-import org.opensourcephysics.display.DrawingPanel;
 
 
 /**
@@ -42,7 +45,7 @@ import org.opensourcephysics.display.DrawingPanel;
  * plementation, visualization and stati-
  * stical analysis.
  */
-public abstract class Deposition implements Drawable {
+public abstract class Deposition {
 
 
 /********************
@@ -72,15 +75,68 @@ public abstract class Deposition implements Drawable {
 	
 	/**
 	 * Stores width for systems with L*H >
-	 * {@link EmbeddedDBArray.MAX_ARRAY_SIZE}
+	 * {@link EmbeddedDBArray.MAX_ARRAY_SIZE}, in
+	 * the store selected by the "widthStore" parameter.
+	 */
+	protected DoubleSeries width;
+	/**
+	 * Separates the stored width of this model from
+	 * those of other models sharing its store.
 	 */
-	protected EmbeddedDBArray width;
+	protected int seriesId;
 	protected long maxSteps;
 	
 	protected double h_avg;
 	protected int minHeight;
 	protected int maxHeight;
 	
+	/**
+	 * Running sums of h and h^2 over all columns,
+	 * kept exact so that h_avg and width() can be
+	 * updated in O(1) as each column changes.
+	 */
+	protected long heightSum;
+	protected long heightSqSum;
+	
+	/**
+	 * Number of columns at each height. Lets min
+	 * and max height be tracked without rescanning
+	 * height[] when the extreme column moves.
+	 */
+	protected int[] heightCount;
+	
+	/**
+	 * Depositions between averages under the default time
+	 * scale. Averaging after every deposition would end each
+	 * call of {@link #stepMany(long)} after one deposition.
+	 */
+	public final static int DEFAULT_AVERAGE_MOD = 1024;
+	
+	/**
+	 * Full-surface reductions over height[], selected
+	 * once at startup.
+	 */
+	protected final static SurfaceReductions REDUCTIONS = SurfaceReductionsFactory.getDefault();
+	
+/**********************
+ * Random Number Gen. *
+ **********************/
+	
+	final static int COLUMN_BUFFER_SIZE = 4096;
+	
+	/**
+	 * Per-model generator, seeded from the "seed"
+	 * parameter so that each trial is reproducible.
+	 */
+	protected RandomSource rng;
+	
+	/**
+	 * Columns generated in bulk by rng, consumed one
+	 * per deposition by {@link #nextColumn()}.
+	 */
+	protected int[] columns;
+	protected int columnIndex;
+	
 /****************
  * Time Scaling *	
  ****************/
@@ -91,41 +147,43 @@ public abstract class Deposition implements Drawable {
 	protected long time;
 	
 	/**
-	 * Determines whether a measurement of the width
-	 * should be conducted at the given time. It can
-	 * be implemented in a variety of ways to enable
-	 * different definitions of time scales.
+	 * Determines when the width is measured and when
+	 * this model's quantities are averaged. It can be
+	 * implemented in a variety of ways to enable dif-
+	 * ferent definitions of time scales.
 	 */
-	protected Predicate<Long> measurementScheduler;
+	protected TimeScale timeScale;
 	
 	/**
-	 * Determines whether this model's quantities should
-	 * be averaged for the given t.
+	 * Precomputed by timeScale, so that each deposition
+	 * only compares time and heightSum with the next event.
 	 */
-	protected Predicate<Long> averageScheduler; 
+	protected boolean measureEveryStep;
+	protected long nextEventTime;
+	protected long nextEventHeightSum;
+	protected long lastEventTime;
 	
 	/**
-	 * Called during step returns true.
+	 * Set by stepMany when the last deposition it made
+	 * is one at which this model should be averaged.
 	 */
-	protected Consumer<Long> stepCallback;
+	protected boolean averageDue;
 	
 	/**
-	 * Provides access to scaled time.
+	 * stepMany returns once heightSum exceeds this value,
+	 * so batches do not overrun the height of the model.
 	 */
-	protected Supplier<Long> timeScaler;
-	
-	// Stores last integer value of certain parameters
-	protected long last_h_avg;
-	protected int last_scaled_ln_t;
+	protected long heightSumLimit = Long.MAX_VALUE;
 	
 /******************
  * Slot Variables *	
  ******************/
 	
 	/**
-	 * Square lattice storing representation of surface.
+	 * Square lattice storing representation of surface,
+	 * in the layout selected by the "lattice" parameter.
 	 */
-	protected int[][] lattice;
+	protected LatticeStore lattice;
 	
 	/**
 	 * Tracks whether the bottom of slot has just been
@@ -150,7 +208,7 @@ public abstract class Deposition implements Drawable {
 	 */
 	public Deposition() {
 		initParams();
-		setDefaultTimeScale(1);
+		setDefaultTimeScale(DEFAULT_AVERAGE_MOD);
 	}
 	
 	/**
@@ -171,15 +229,15 @@ public abstract class Deposition implements Drawable {
 	 * @param params contains updated parameters input by user
 	 */
 	public void init(HashMap<String, Double> params) {
-		init(params, ((int)getParameter("L"))*(int)getParameter("H"));
+		init(params, ((long)getParameter("L"))*(long)getParameter("H"));
 	}
 	
 	/**
 	 * @param params contains updated parameters input by user
 	 * @param N	max size of member
-	 * 			{@link edu.emory.physics.surfdep.utils.EmbeddedDBArray}.
+	 * 			{@link edu.emory.physics.surfdep.utils.DoubleSeries}.
 	 */
-	public void init(HashMap<String, Double> params, int N) {
+	public void init(HashMap<String, Double> params, long N) {
 		
 		for (String key: params.keySet())
 			parameters.put(key, params.get(key));
@@ -187,19 +245,49 @@ public abstract class Deposition implements Drawable {
 		H = (int)getParameter("H");
 		dH = (int)getParameter("dH");
 		height = new int[L];
+		heightCount = new int[H + 1];
+		analyzeHeight();
+		
+		// Seed this model's generator, recording the seed used
+		long seed = (long)getParameter("seed");
+		if (seed == 0) {
+			seed = RandomSourceFactory.generateSeed();
+			parameters.put("seed", (double)seed);
+		}
+		rng = new RandomSourceFactory().createRandomSource((int)getParameter("rng"), seed);
+		// Models sharing a seed draw from disjoint streams
+		if (parameters.containsKey("modelId"))
+			for (int i = 0; i < (int)getParameter("modelId"); i++)
+				rng.jump();
+		columns = new int[COLUMN_BUFFER_SIZE];
+		columnIndex = columns.length;
 		
 		// Define an array to store width values
 		maxSteps = (N);
-		width = new EmbeddedDBArray(maxSteps);
+		width = new DoubleSeriesFactory().createDoubleSeries(
+			(int)getParameter("widthStore"), maxSteps,
+			new DoubleCodecFactory().createDoubleCodec(
+				(int)getParameter("widthCodec"), getParameter("widthQuantum")
+			),
+			((long)getParameter("widthCacheMB")) << 20,
+			(int)getParameter("widthBackend"),
+			seriesId
+		);
 		
 		time = -1L;	//Incremented once before used
 		
 		// Initialize slot, which will store the uppermost
 		// surface of the deposition as a 2D bit array.
-		lattice = new int[dH][L%32 == 0 ? L/32 : L/32 + 1];
+		lattice = new LatticeStoreFactory().createLatticeStore(
+			(int)getParameter("lattice"), height, dH
+		);
 		
-		initFunctions();
 		initDrawingParams();
+		
+		// Schedule first width measurement and average
+		timeScale.reset();
+		lastEventTime = -1L;
+		scheduleEvents();
 	}
 	
 	/**
@@ -210,45 +298,111 @@ public abstract class Deposition implements Drawable {
 		parameters = new HashMap<String, Double>();
 		setParameter("L", 256);
 		setParameter("H", 524288);
-		setParameter("dH", 2048);		
+		setParameter("dH", 2048);
+		setParameter("seed", 0);	// Generated during init
+		setParameter("rng", RandomSourceFactory.XOROSHIRO128PLUS);
+		setParameter("lattice", LatticeStoreFactory.LONG_WORDS);
+		setParameter("widthStore", DoubleSeriesFactory.EMBEDDED_DB);
+		setParameter("widthCodec", DoubleCodecFactory.XOR);
+		setParameter("widthQuantum", 1e-6);	// Used by QUANTIZED codec
+		setParameter("widthCacheMB", EmbeddedDBArray.DEFAULT_CACHE_BYTES >> 20);
+		setParameter("widthBackend", PageStoreFactory.MYSQL);
 	}
 	
 	public final void step() {
+		stepMany(1);
+	}
+	
+	/**
+	 * Advances the model by up to n depositions in a single
+	 * loop, so that callers pay for one call per batch rather
+	 * than per particle. Returns early after a deposition at
+	 * which an average is due, see {@link #isAverageDue()}, or
+	 * once the average height limit has been passed.
+	 * @return the number of depositions made
+	 */
+	public final long stepMany(long n) {
 		
-		// Callback invoked before next step
-		onStep(time++);
-
-		// Select deposition location
-		Point p = deposit();
+		averageDue = false;
 		
-		// Clear one half of slot after preceding half fills
-		if (!bottomCleared && (p.y % dH) == 0) {
-			clearBottom();
-			bottomCleared = true;
-			topCleared = false;
-		}
-		else if (!topCleared && (p.y % (dH/2)) == 0 && (p.y % dH) != 0) {
-			clearTop();
-			topCleared = true;
-			bottomCleared = false;
+		for (long i = 1; i <= n; i++) {
+			
+			time++;
+	
+			// Select deposition location
+			long site = deposit(nextColumn());
+			int x = siteX(site);
+			int y = siteY(site);
+			
+			// Clear one half of slot after preceding half fills
+			if (!bottomCleared && (y % dH) == 0) {
+				clearBottom();
+				bottomCleared = true;
+				topCleared = false;
+			}
+			else if (!topCleared && (y % (dH/2)) == 0 && (y % dH) != 0) {
+				clearTop();
+				topCleared = true;
+				bottomCleared = false;
+			}
+			
+			// Populate site determined by subclass		
+			setBit(x, y);
+			
+			// Update height and surface statistics in O(1)
+			setHeight(x, y);
+			if (measureEveryStep) {
+				recordWidth(width());
+			}
+			
+			// Return control at event boundaries
+			if (time == nextEventTime || heightSum >= nextEventHeightSum) {
+				onEvent();
+				averageDue = true;
+				return i;
+			}
+			if (heightSum > heightSumLimit) {
+				return i;
+			}
 		}
 		
-		// Populate site determined by subclass		
-		setBit(p.x, p.y);
-		height[p.x] = p.y;
-		
-		// Calculate and store snapshot of system
-		analyzeHeight();
-		if (measure(time)) {
-			recordWidth(width());
+		return n;
+	}
+	
+	/**
+	 * Override this method to deposit point, given the
+	 * randomly selected column. The chosen site is re-
+	 * turned packed by {@link #site(int, int)} so that
+	 * no object is allocated per deposition.
+	 */
+	protected abstract long deposit(int col);
+	
+	/**
+	 * Returns the next random column, refilling the
+	 * column buffer from rng in bulk when exhausted.
+	 */
+	protected int nextColumn() {
+		if (columnIndex == columns.length) {
+			rng.nextInts(columns, columns.length, L);
+			columnIndex = 0;
 		}
-		
+		return columns[columnIndex++];
 	}
 	
 	/**
-	 * Override this method to deposit point.
+	 * Packs the coordinates of a deposition site into a long.
 	 */
-	protected abstract Point deposit();
+	protected static long site(int x, int y) {
+		return (((long)x) << 32) | (y & 0xFFFFFFFFL);
+	}
+	
+	protected static int siteX(long site) {
+		return (int)(site >>> 32);
+	}
+	
+	protected static int siteY(long site) {
+		return (int)site;
+	}
 	
 	
 /*******************
@@ -256,29 +410,25 @@ public abstract class Deposition implements Drawable {
  *******************/
 
 	protected int getBit(int x, int y) {
-		return (lattice[y%dH][x/32] & (1 << (x%32))) == 0 ? 0 : 1;
+		return lattice.get(x, y);
 	} 
 	
 	protected void setBit(int x, int y) {
-		lattice[y%dH][x/32] |= (1 << (x%32));
+		lattice.set(x, y);
 	}
 
 	/**
 	 *  Clears the bottom half of the slot
 	 */
 	protected void clearBottom() {
-		for(int y = 0; y < dH/2; y++)
-			for(int x = 0; x < L/32; x++)
-				lattice[y][x] = 0;
+		lattice.clearRows(0, dH/2);
 	}
 
 	/**
 	 *  Clears the top half of the slot
 	 */
 	protected void clearTop() {
-		for(int y = dH/2; y < dH; y++)
-			for(int x = 0; x < L/32; x++)
-				lattice[y][x] = 0;
+		lattice.clearRows(dH/2, dH);
 	}
 	
 
@@ -294,6 +444,22 @@ public abstract class Deposition implements Drawable {
 		width.record(w);
 	}
 	
+	/**
+	 * Copies widths at times from (inclusive) to to
+	 * (exclusive) into dst.
+	 */
+	public void getWidths(long from, long to, double[] dst) {
+		width.getRange(from, to, dst);
+	}
+	
+	/**
+	 * Hands widths at times from (inclusive) to to
+	 * (exclusive), clipped to those recorded, to consumer.
+	 */
+	public void forEachWidth(long from, long to, DoubleSeries.RangeConsumer consumer) {
+		width.forEachRange(Math.max(0L, from), Math.min(to, width.size()), consumer);
+	}
+	
 	public void registerDBOperationCallbacks(
 			DBOperationCallback onPush,
 			DBOperationCallback onPull
@@ -308,56 +474,95 @@ public abstract class Deposition implements Drawable {
  ******************/
 	
 	public boolean measure(long t) {
-		return measurementScheduler.test(t);
+		return measureEveryStep || t == lastEventTime;
 	}
 	
-	public void onStep(long t) {
-		stepCallback.accept(t);
+	public boolean takeAverage(long t) {
+		return t == lastEventTime;
 	}
 	
-	public boolean takeAverage(long t) {
-		return averageScheduler.test(t);
+	/**
+	 * Records the width if it is only measured at events,
+	 * and schedules the next event.
+	 */
+	protected void onEvent() {
+		lastEventTime = time;
+		if (!measureEveryStep) {
+			recordWidth(width());
+		}
+		scheduleEvents();
+	}
+	
+	protected void scheduleEvents() {
+		nextEventTime = timeScale.nextEventTime(time);
+		nextEventHeightSum = timeScale.nextEventHeightSum(heightSum, L);
+	}
+	
+	/**
+	 * @return whether the last call to stepMany stopped
+	 * 			at a time at which an average is due.
+	 */
+	public boolean isAverageDue() {
+		return averageDue;
+	}
+	
+	/**
+	 * Must be called before init, with an id unique among
+	 * models whose widths are alive at the same time.
+	 */
+	public void setSeriesId(int id) {
+		seriesId = id;
+	}
+	
+	/**
+	 * Deletes the stored width of this model. Width
+	 * values are unavailable afterwards.
+	 */
+	public void deleteWidth() {
+		if (width != null) {
+			width.delete();
+			width = null;
+		}
+	}
+	
+	/**
+	 * Limits stepMany to return once h_avg exceeds h.
+	 * Must be called after init.
+	 */
+	public void setAverageHeightLimit(double h) {
+		heightSumLimit = (long)(h*L);
 	}
 	
 	public long getScaledTime() {
-		return timeScaler.get();
+		return timeScale.scaledTime(time);
+	}
+	
+	/**
+	 * Replaces the time scale, rescheduling the next
+	 * event if the model has been initialized.
+	 */
+	public void setTimeScale(TimeScale scale) {
+		timeScale = scale;
+		measureEveryStep = scale.measuresEveryStep();
+		if (height != null) {
+			scale.reset();
+			scheduleEvents();
+		}
 	}
 	
 	public void setHavgTimeScale() {
-		// Measure when (int)h_avg increments
-		measurementScheduler = (Long t) -> {return (int)h_avg > last_h_avg;};
-		// Store last h_avg value
-		stepCallback = (Long t) -> last_h_avg = (int)h_avg;
-		// Return current h_avg
-		timeScaler = () -> {return last_h_avg;};
-		// Same as measurement
-		averageScheduler = (Long t) -> {return (int)h_avg > last_h_avg;};
+		// Measure and average when (int)h_avg increments
+		setTimeScale(new HeightTimeScale());
 	}
 	
 	public void setLogarithmicTimeScale(double averageFactor) {
-		// Measure when (int)h_avg increments
-		measurementScheduler = (Long t) -> {return true;};
-		// Store last h_avg value
-		stepCallback = (Long t) -> {
-			last_scaled_ln_t =  (int)(Math.log(t)/averageFactor);
-		};
-		// Return current h_avg
-		timeScaler = () -> {return time;};
-		// Same as measurement
-		averageScheduler = (Long t) -> {
-			return (int)(Math.log(t)/averageFactor) > last_scaled_ln_t;
-		};
+		// Measure every deposition, average when (int)(ln t/A) increments
+		setTimeScale(new LogarithmicTimeScale(averageFactor));
 	}
 	
 	public void setDefaultTimeScale(int mod) {
-		// Measure every averageFactor depositions
-		measurementScheduler = (Long t) -> {return true;};
-		// Do nothingreturn (int)h_avg > last_h_avg;
-		stepCallback = (Long t) -> {};
-		// Return current (long)h_avg
-		timeScaler = () -> {return time;};
-		// Every mod measurements
-		averageScheduler = (Long t) -> {return time % (long)mod == 0;};
+		// Measure every deposition, average every mod depositions
+		setTimeScale(new DefaultTimeScale(mod));
 	}
 	
 	protected boolean isValid(int x, int y) {
@@ -384,11 +589,21 @@ public abstract class Deposition implements Drawable {
 			return -1;
 		lo = (lo<0) ? 0 : lo;
 		hi = (hi>=L)? L-1 : hi;
-		int max = height[(hi-lo)/2 + lo];
-		for (int i = lo; i <= hi; i++)
-			if (height[i] > max)
-				max = height[i];
-		return max;
+		return REDUCTIONS.max(height, lo, hi + 1);
+	}
+
+	/**
+	 * Replaces this model's generator, e.g. with a stream
+	 * split from another model's for use on another thread.
+	 * Any buffered columns are discarded.
+	 */
+	public void setRandomSource(RandomSource source) {
+		rng = source;
+		columnIndex = columns.length;
+	}
+	
+	public RandomSource getRandomSource() {
+		return rng;
 	}
 
 	public double getParameter(String name) {
@@ -406,19 +621,7 @@ public abstract class Deposition implements Drawable {
 	
 	protected double beta;
 	protected double saturatedLnw_avg;
-	protected LinearRegression.Function lnw;
-	protected LinearRegression.Function lnt;
 	protected LinearRegression lnw_vs_lnt;
-	
-	public void initFunctions() {
-		
-		lnw = (double x) -> {
-			return Math.log(getWidth((long)x));
-		};
-		lnt = (double x) -> {
-			return (double)Math.log((long)x);
-		};
-	}
 
 	/**
 	 * Width follows Scaling Relation:
@@ -437,7 +640,14 @@ public abstract class Deposition implements Drawable {
 	public void calculateBeta(int t_0, int t_x) {
 		if (t_x <= 0)
 			return;
-		lnw_vs_lnt = new LinearRegression(lnt, lnw, t_0, t_x, 1);
+		final LinearRegression regression = new LinearRegression();
+		forEachWidth(t_0, t_x + 1L, (long index, double[] values, int from, int to) -> {
+			long t = index;
+			for (int i = from; i < to; i++)
+				regression.add(Math.log(t++), Math.log(values[i]));
+		});
+		regression.solve();
+		lnw_vs_lnt = regression;
 		beta = lnw_vs_lnt.m();
 	}
 	
@@ -446,38 +656,75 @@ public abstract class Deposition implements Drawable {
 	 * @param t_x
 	 */
 	public void calculateSaturatedLnw_avg (long t_x) {
-		double sum = 0;
-		for (long t = t_x; t < time; t++)
-			sum += getWidth(t);
-		saturatedLnw_avg = (double)Math.log((sum)/((double)(time-t_x)));
+		final double[] sum = {0};
+		forEachWidth(t_x, time, (long index, double[] values, int from, int to) -> {
+			double s = 0;
+			for (int i = from; i < to; i++)
+				s += values[i];
+			sum[0] += s;
+		});
+		saturatedLnw_avg = Math.log((sum[0])/((double)(time-t_x)));
 	}
 	
 	/**
-	 * Calculate max, min and avg height
+	 * Recalculate max, min and avg height, along with
+	 * the running sums and height histogram, with a
+	 * full scan of height[].
 	 */
 	public void analyzeHeight() {
-		int sum = 0;
-		minHeight = height[0];
-		maxHeight = height[0];
-		for (int i = 0; i < L; i++) {
-			if (height[i] < minHeight)
-				minHeight = height[i];
-			if (height[i] > maxHeight)
-				maxHeight = height[i];
-			sum += height[i];
-		}
-		h_avg = ((double)sum)/((double)L);
+		heightSum = REDUCTIONS.sum(height, 0, L);
+		heightSqSum = REDUCTIONS.sumOfSquares(height, 0, L);
+		minHeight = REDUCTIONS.min(height, 0, L);
+		maxHeight = REDUCTIONS.max(height, 0, L);
+		Arrays.fill(heightCount, 0);
+		for (int i = 0; i < L; i++)
+			heightCount[height[i]]++;
+		h_avg = ((double)heightSum)/((double)L);
 	}
 	
 	/**
-	 *  Instantaneous "width" of the surface
+	 * Sets the height of column x, updating max, min
+	 * and avg height in O(1). Min and max only move
+	 * past empty histogram bins, so repeated updates
+	 * are amortized O(1) as the surface grows.
+	 */
+	protected void setHeight(int x, int h) {
+		
+		int old = height[x];
+		height[x] = h;
+		
+		heightSum += h - old;
+		heightSqSum += (long)h*h - (long)old*old;
+		heightCount[old]--;
+		heightCount[h]++;
+		
+		if (h > maxHeight)
+			maxHeight = h;
+		else if (old == maxHeight)
+			while (heightCount[maxHeight] == 0)
+				maxHeight--;
+		
+		if (h < minHeight)
+			minHeight = h;
+		else if (old == minHeight)
+			while (heightCount[minHeight] == 0)
+				minHeight++;
+		
+		h_avg = ((double)heightSum)/((double)L);
+	}
+	
+	/**
+	 *  Instantaneous "width" of the surface, computed
+	 *  from the running sums. Writing heightSum as
+	 *  q*L + r keeps sum(h^2) - sum(h)^2/L exact in
+	 *  long arithmetic up to the r^2/L remainder.
 	 * @return
 	 */
 	public double width() {
-		double sum = 0;
-		for (int i = 0; i < L; i++)
-			sum += (height[i]-h_avg)*(height[i]-h_avg);
-		return (double)Math.sqrt(sum/(double)L);
+		long q = heightSum/L;
+		long r = heightSum%L;
+		double sum = (heightSqSum - q*(heightSum + r)) - ((double)(r*r))/L;
+		return sum > 0 ? Math.sqrt(sum/L) : 0;
 	}
 	
 
@@ -498,26 +745,12 @@ public abstract class Deposition implements Drawable {
 		ySpacing = atomicLength;
 	}
 	
-	public void draw(DrawingPanel dp, Graphics g) {
-		
-		for (int i = 0; i < L; i++) {
-			for (int j = 0; j < dH; j++) {
-				if (getBit(i, j) == 1) {
-					g.setColor(Color.RED);
-					g.fillRect(	dp.xToPix(i*(xSpacing)),
-								dp.yToPix(j*(ySpacing)),
-								atomicLength,
-								atomicHeight);
-				}
-				else {
-					g.setColor(Color.BLACK);
-					g.fillRect(	dp.xToPix(i*(xSpacing)),
-								dp.yToPix(j*(ySpacing)),
-								atomicLength,
-								atomicHeight);
-				}
-			}
-		}
+	/**
+	 * Exposes the slot for drawing, which is done outside
+	 * the model so that models never load AWT classes.
+	 */
+	public boolean isOccupied(int x, int y) {
+		return getBit(x, y) == 1;
 	}
 	
 	/**
@@ -552,16 +785,6 @@ public abstract class Deposition implements Drawable {
 		}
 	}
 
-/******************
- * Nested Classes *
- ******************/
-
-	protected class Point {
-		int x;
-		int y;
-	}
-
-	
 /***********
  * Getters *
  ***********/
@@ -571,6 +794,7 @@ public abstract class Deposition implements Drawable {
 	public int getHeight()						{return H;}
 	public long getTime()						{return time;}
 	public int getMaxHeight()					{return maxHeight;}
+	public int getMinHeight()					{return minHeight;}
 	
 	public double getBeta()						{return beta;}
 	public double getAtomicLength()				{return atomicLength;}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models;
+
+/**
+ * Measures width and averages whenever (int)h_avg
+ * increments. Since h_avg = heightSum/L, the next
+ * event is reached once heightSum passes the next
+ * multiple of L.
+ * 
+ * @author Tyler Parsons
+ */
+public class HeightTimeScale extends TimeScale {
+
+	/**
+	 * (int)h_avg at the most recent event, and at
+	 * the event before it.
+	 */
+	private long level;
+	private long lastLevel;
+	
+	@Override
+	public boolean measuresEveryStep() {
+		return false;
+	}
+
+	@Override
+	public long nextEventTime(long t) {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public long nextEventHeightSum(long heightSum, int L) {
+		lastLevel = level;
+		level = heightSum/L;
+		return (level + 1)*L;
+	}
+
+	/**
+	 * Scaled time is the value of (int)h_avg before the
+	 * most recent event, which is also the index of the
+	 * width recorded at that event.
+	 */
+	@Override
+	public long scaledTime(long t) {
+		return lastLevel;
+	}
+	
+	@Override
+	public void reset() {
+		level = 0;
+		lastLevel = 0;
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models;
+
+/**
+ * Measures width after every deposition and averages
+ * whenever (int)(ln t/A) increments, so that averages
+ * are evenly spaced on a logarithmic time axis.
+ * 
+ * @author Tyler Parsons
+ */
+public class LogarithmicTimeScale extends TimeScale {
+
+	private final double averageFactor;
+	
+	public LogarithmicTimeScale(double averageFactor) {
+		this.averageFactor = averageFactor;
+	}
+	
+	@Override
+	public boolean measuresEveryStep() {
+		return true;
+	}
+
+	/**
+	 * Solves for the first t at which (int)(ln t/A) reaches
+	 * its next value. The estimate from exp() is corrected
+	 * against the exact condition, so rounding can neither
+	 * skip nor repeat an event.
+	 */
+	@Override
+	public long nextEventTime(long t) {
+		
+		// ln t is undefined until t = 1
+		if (t < 1)
+			return 1;
+		
+		int k = scaledLn(t) + 1;
+		long next = Math.max(t + 1, (long)Math.ceil(Math.exp(k*averageFactor)));
+		while (scaledLn(next) < k)
+			next++;
+		while (next - 1 > t && scaledLn(next - 1) >= k)
+			next--;
+		return next;
+	}
+	
+	private int scaledLn(long t) {
+		return (int)(Math.log(t)/averageFactor);
+	}
+
+	@Override
+	public long nextEventHeightSum(long heightSum, int L) {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public long scaledTime(long t) {
+		return t;
+	}
+
+}
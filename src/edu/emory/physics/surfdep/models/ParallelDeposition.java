@@ -0,0 +1,416 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models;
+
+import edu.emory.physics.surfdep.models.lattice.LatticeStore;
+import edu.emory.physics.surfdep.utils.RandomSource;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * ParallelDeposition.java
+ * 
+ * Runs a single {@link Deposition} on several threads by
+ * splitting its columns into stripes, one per thread. Each
+ * stripe is split again into two halves, and depositions
+ * alternate between all first halves and all second halves
+ * (a synchronous sublattice scheme). A deposition reads the
+ * columns next to it, so while the first halves are active
+ * every column a thread reads is either its own or lies in
+ * an inactive half, and no halo exchange or locking is
+ * needed beyond a barrier between phases.
+ * 
+ * The model's own deposition rule is reused unchanged.
+ * Depositions are made in sweeps of L, one per column of
+ * each half on average, and each stripe logs the change its
+ * depositions make to the height sums. {@link #stepMany(long)}
+ * then steps through the log one deposition at a time, in
+ * the same way as {@link Deposition#stepMany(long)}, taking
+ * the depositions of each phase round robin over the stripes.
+ * The width is therefore recorded, and events and averages
+ * fall due, at the same times as in a serial run, and trials
+ * may be run with any time scale.
+ * 
+ * Time, height sums and h_avg follow the log, while heights,
+ * the slot and the min and max heights are up to one sweep
+ * ahead of them.
+ * 
+ * @author Tyler Parsons
+ */
+public class ParallelDeposition {
+
+	private final Deposition model;
+	private final Stripe[] stripes;
+	private final Thread[] threads;
+	
+	/**
+	 * Met by all stripe threads and the stepping thread at
+	 * the start of a sweep, between its two phases and at
+	 * its end.
+	 */
+	private final CyclicBarrier barrier;
+	
+	private boolean started;
+	private boolean closed;
+	private volatile RuntimeException failure;
+	
+	/**
+	 * Position in the log of the last sweep of the next
+	 * deposition to be stepped: phase, index within the
+	 * phase, and stripe.
+	 */
+	private int phase = 2;
+	private int index;
+	private int stripe;
+	
+	/**
+	 * Most depositions made in any half of any stripe,
+	 * which bounds the index within a phase.
+	 */
+	private final int maxCount;
+	
+	/**
+	 * @param model	an initialized model
+	 * @param nThreads	number of stripes and threads
+	 * @throws IllegalArgumentException if the model is too
+	 * 			short to give every half-stripe a whole number
+	 * 			of lattice words
+	 */
+	public ParallelDeposition(Deposition model, int nThreads) throws IllegalArgumentException {
+		
+		int L = model.getLength();
+		int align = LatticeStore.COLUMN_ALIGNMENT;
+		if (L < 2*nThreads*align) {
+			throw new IllegalArgumentException(
+				"L = "+L+" is too short for "+nThreads+" threads"
+			);
+		}
+		
+		this.model = model;
+		stripes = new Stripe[nThreads];
+		threads = new Thread[nThreads];
+		
+		// Half-stripe boundaries, aligned so that no two
+		// halves share a lattice word
+		int[] bounds = new int[2*nThreads + 1];
+		for (int i = 0; i < bounds.length - 1; i++)
+			bounds[i] = (int)(((long)i*L/(2*nThreads))/align)*align;
+		bounds[bounds.length - 1] = L;
+		
+		RandomSource rng = model.getRandomSource();
+		for (int i = 0; i < nThreads; i++) {
+			stripes[i] = new Stripe(
+				bounds[2*i], bounds[2*i + 1], bounds[2*i + 2], rng.split()
+			);
+			threads[i] = new Thread(stripes[i], "deposition-stripe-"+i);
+			threads[i].setDaemon(true);
+		}
+		
+		int most = 0;
+		for (Stripe s: stripes)
+			most = Math.max(most, Math.max(s.count[0], s.count[1]));
+		maxCount = most;
+		
+		barrier = new CyclicBarrier(nThreads + 1);
+	}
+	
+	/**
+	 * Parallel counterpart of {@link Deposition#stepMany(long)}.
+	 * Makes up to n depositions, returning early at an event,
+	 * after which {@link Deposition#isAverageDue()} is true, or
+	 * once the average height limit has been passed. The model
+	 * must not be stepped serially until {@link #close()}.
+	 * @return the number of depositions made
+	 */
+	public long stepMany(long n) throws InterruptedException {
+		
+		if (closed)
+			throw new IllegalStateException("Stepped after close");
+		if (!started) {
+			for (Stripe s: stripes)
+				s.analyze();
+			for (Thread t: threads)
+				t.start();
+			started = true;
+		}
+		
+		model.averageDue = false;
+		
+		for (long i = 1; i <= n; i++) {
+			
+			if (phase == 2)
+				sweep();
+			
+			model.time++;
+			
+			Stripe s = stripes[stripe];
+			model.heightSum += s.sumSteps[phase][index];
+			model.heightSqSum += s.sqSumSteps[phase][index];
+			model.h_avg = ((double)model.heightSum)/((double)model.L);
+			advance();
+			
+			if (model.measureEveryStep) {
+				model.recordWidth(model.width());
+			}
+			
+			// Return control at event boundaries
+			if (model.time == model.nextEventTime || model.heightSum >= model.nextEventHeightSum) {
+				model.onEvent();
+				model.averageDue = true;
+				return i;
+			}
+			if (model.heightSum > model.heightSumLimit) {
+				return i;
+			}
+		}
+		
+		return n;
+	}
+	
+	/**
+	 * Stops the stripe threads. Time, height sums and the
+	 * recorded width are left as last stepped, so the model
+	 * can be analyzed and saved, but its heights may be up
+	 * to one sweep ahead of them and it must not be stepped
+	 * again.
+	 */
+	public void close() throws InterruptedException {
+		if (closed)
+			return;
+		closed = true;
+		if (!started)
+			return;
+		for (Thread t: threads)
+			t.interrupt();
+		for (Thread t: threads)
+			t.join();
+	}
+	
+	/**
+	 * Runs both phases of a sweep, and rewinds the log.
+	 */
+	private void sweep() throws InterruptedException {
+		
+		try {
+			barrier.await();
+			barrier.await();
+			barrier.await();
+		} catch (BrokenBarrierException e) {
+			throw new IllegalStateException("A stripe thread has stopped", e);
+		}
+		if (failure != null)
+			throw failure;
+		
+		phase = 0;
+		index = 0;
+		stripe = 0;
+		
+		// Min and max heights are not stepped, so take
+		// them as they stand at the end of the sweep
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		for (Stripe s: stripes) {
+			min = Math.min(min, s.min);
+			max = Math.max(max, s.max);
+		}
+		model.minHeight = min;
+		model.maxHeight = max;
+	}
+	
+	/**
+	 * Moves to the next deposition in the log, round robin
+	 * over stripes with a deposition left in the phase.
+	 */
+	private void advance() {
+		do {
+			if (++stripe == stripes.length) {
+				stripe = 0;
+				if (++index == maxCount) {
+					index = 0;
+					if (++phase == 2)
+						return;
+				}
+			}
+		} while (index >= stripes[stripe].count[phase]);
+	}
+	
+	public int getThreadCount() {
+		return stripes.length;
+	}
+	
+	
+/******************
+ * Nested Classes *
+ ******************/
+	
+	/**
+	 * A range of columns owned by one thread, with its own
+	 * generator and surface statistics.
+	 */
+	private class Stripe implements Runnable {
+		
+		final int[] lo = new int[2];
+		final int[] hi = new int[2];
+		final int from;
+		final int to;
+		final RandomSource rng;
+		final int[] columns;
+		
+		/**
+		 * Depositions in each half per sweep.
+		 */
+		final int[] count = new int[2];
+		
+		/**
+		 * Changes to the height sums made by each deposition
+		 * of the last sweep, by phase.
+		 */
+		final int[][] sumSteps = new int[2][];
+		final long[][] sqSumSteps = new long[2][];
+		
+		int min;
+		int max;
+		int[] heightCount;
+		
+		boolean bottomCleared;
+		boolean topCleared;
+		
+		Stripe(int from, int mid, int to, RandomSource rng) {
+			this.from = from;
+			this.to = to;
+			lo[0] = from;	hi[0] = mid;
+			lo[1] = mid;	hi[1] = to;
+			this.rng = rng;
+			for (int p = 0; p < 2; p++) {
+				count[p] = hi[p] - lo[p];
+				sumSteps[p] = new int[count[p]];
+				sqSumSteps[p] = new long[count[p]];
+			}
+			columns = new int[Math.max(count[0], count[1])];
+			heightCount = new int[model.heightCount.length];
+			bottomCleared = model.bottomCleared;
+			topCleared = model.topCleared;
+		}
+		
+		/**
+		 * Computes statistics for this stripe from scratch.
+		 */
+		void analyze() {
+			Arrays.fill(heightCount, 0);
+			min = model.height[from];
+			max = model.height[from];
+			for (int x = from; x < to; x++) {
+				int h = model.height[x];
+				heightCount[h]++;
+				min = Math.min(min, h);
+				max = Math.max(max, h);
+			}
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					barrier.await();
+					// A failed stripe still meets the barriers,
+					// and the stepping thread reports the failure
+					for (int p = 0; p < 2; p++) {
+						try {
+							if (failure == null)
+								deposit(p);
+						} catch (RuntimeException e) {
+							failure = e;
+						}
+						barrier.await();
+					}
+				}
+			} catch (InterruptedException | BrokenBarrierException e) {
+				// Closed, or the stepping thread was interrupted
+			}
+		}
+		
+		/**
+		 * Deposits one particle per column of half p, at
+		 * random columns within the half, logging each step.
+		 */
+		void deposit(int p) {
+			
+			int a = lo[p];
+			int n = count[p];
+			int[] stepSums = sumSteps[p];
+			long[] stepSqSums = sqSumSteps[p];
+			int dH = model.dH;
+			
+			rng.nextInts(columns, n, n);
+			
+			for (int i = 0; i < n; i++) {
+				
+				long site = model.deposit(a + columns[i]);
+				int x = Deposition.siteX(site);
+				int y = Deposition.siteY(site);
+				
+				// Clear this stripe's half of the slot. Only the
+				// top of each column is read by the deposition
+				// rule, so stripes may clear independently.
+				if (!bottomCleared && (y % dH) == 0) {
+					model.lattice.clearRows(0, dH/2, from, to);
+					bottomCleared = true;
+					topCleared = false;
+				}
+				else if (!topCleared && (y % (dH/2)) == 0 && (y % dH) != 0) {
+					model.lattice.clearRows(dH/2, dH, from, to);
+					topCleared = true;
+					bottomCleared = false;
+				}
+				
+				model.setBit(x, y);
+				
+				int old = model.height[x];
+				stepSums[i] = y - old;
+				stepSqSums[i] = (long)y*y - (long)old*old;
+				update(x, y);
+			}
+		}
+		
+		/**
+		 * Stripe-local counterpart of {@link Deposition#setHeight},
+		 * keeping only the min and max heights.
+		 */
+		void update(int x, int h) {
+			
+			int old = model.height[x];
+			model.height[x] = h;
+			
+			heightCount[old]--;
+			heightCount[h]++;
+			
+			if (h > max)
+				max = h;
+			else if (old == max)
+				while (heightCount[max] == 0)
+					max--;
+			
+			if (h < min)
+				min = h;
+			else if (old == min)
+				while (heightCount[min] == 0)
+					min++;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models;
+
+/**
+ * TimeScale.java
+ * 
+ * Defines when a {@link Deposition} measures its width
+ * and takes averages. Rather than being asked at every
+ * step, a TimeScale precomputes the next event, so the
+ * deposition loop only compares primitive thresholds.
+ * Events are triggered either by time, the number of
+ * depositions made, or by the sum of column heights.
+ * 
+ * @author Tyler Parsons
+ */
+public abstract class TimeScale {
+
+	/**
+	 * @return true if the width should be recorded after every
+	 * 			deposition, false if only at events.
+	 */
+	public abstract boolean measuresEveryStep();
+	
+	/**
+	 * @param t	current time
+	 * @return	the time of the next event after t, or
+	 * 			Long.MAX_VALUE if events are not timed.
+	 */
+	public abstract long nextEventTime(long t);
+	
+	/**
+	 * @param heightSum	current sum of column heights
+	 * @param L	number of columns
+	 * @return	the heightSum at which the next event occurs,
+	 * 			or Long.MAX_VALUE if events are not triggered
+	 * 			by height.
+	 */
+	public abstract long nextEventHeightSum(long heightSum, int L);
+	
+	/**
+	 * @param t current time
+	 * @return the current time in the units of this scale
+	 */
+	public abstract long scaledTime(long t);
+	
+	/**
+	 * Clears any state kept between events, before the
+	 * first event of a new simulation is scheduled.
+	 */
+	public void reset() {}
+	
+}
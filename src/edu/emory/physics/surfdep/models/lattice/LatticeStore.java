@@ -0,0 +1,58 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models.lattice;
+
+/**
+ * LatticeStore.java
+ * 
+ * Storage for the slot, the 2D bit lattice holding the
+ * uppermost rows of a deposition. Heights passed to get
+ * and set are wrapped into the slot's rows by the store.
+ * 
+ * @author Tyler Parsons
+ */
+public interface LatticeStore {
+
+	/**
+	 * @return 1 if the site at column x and height y
+	 * 			is occupied, 0 otherwise.
+	 */
+	public int get(int x, int y);
+	
+	/**
+	 * Occupies the site at column x and height y.
+	 */
+	public void set(int x, int y);
+	
+	/**
+	 * Clears slot rows [fromRow, toRow) for all columns.
+	 */
+	public void clearRows(int fromRow, int toRow);
+	
+	/**
+	 * Clears slot rows [fromRow, toRow) for columns [fromCol,
+	 * toCol). Column bounds must be multiples of
+	 * {@link #COLUMN_ALIGNMENT}, or the lattice length.
+	 */
+	public void clearRows(int fromRow, int toRow, int fromCol, int toCol);
+	
+	/**
+	 * Column ranges aligned to this value never share a
+	 * storage word, and so can be written concurrently.
+	 */
+	public final static int COLUMN_ALIGNMENT = 64;
+	
+}
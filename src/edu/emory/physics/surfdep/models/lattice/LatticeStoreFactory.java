@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models.lattice;
+
+/**
+ * Creates {@link LatticeStore}s from the numeric
+ * store types stored in model parameters.
+ * 
+ * @author Tyler Parsons
+ */
+public class LatticeStoreFactory {
+
+	public final static int LONG_WORDS = 0;
+	public final static int OFF_HEAP = 1;
+	public final static int NONE = 2;
+	
+	/**
+	 * @param type	store type
+	 * @param height	column heights of the model
+	 * @param rows	slot height
+	 */
+	public LatticeStore createLatticeStore(int type, int[] height, int rows) {
+		if (type == LONG_WORDS) {
+			return new LongLatticeStore(height.length, rows);
+		}
+		else if (type == OFF_HEAP) {
+			return new OffHeapLatticeStore(height.length, rows);
+		}
+		else if (type == NONE) {
+			return new NullLatticeStore(height);
+		}
+		// Declare other types here
+		// ...
+		else {
+			throw new IllegalArgumentException("Unknown lattice store type "+type);
+		}
+	}
+	
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models.lattice;
+
+import java.util.Arrays;
+
+/**
+ * Stores the slot in a flat long[], one bit per site,
+ * with each row packed into 64 bit words.
+ * 
+ * @author Tyler Parsons
+ */
+public class LongLatticeStore implements LatticeStore {
+
+	private final long[] words;
+	private final int rows;
+	private final int wordsPerRow;
+	
+	public LongLatticeStore(int L, int rows) {
+		this.rows = rows;
+		wordsPerRow = (L + 63) >>> 6;
+		words = new long[rows*wordsPerRow];
+	}
+	
+	@Override
+	public int get(int x, int y) {
+		return (int)(words[(y % rows)*wordsPerRow + (x >>> 6)] >>> x) & 1;
+	}
+
+	@Override
+	public void set(int x, int y) {
+		words[(y % rows)*wordsPerRow + (x >>> 6)] |= 1L << x;
+	}
+
+	@Override
+	public void clearRows(int fromRow, int toRow) {
+		Arrays.fill(words, fromRow*wordsPerRow, toRow*wordsPerRow, 0L);
+	}
+
+	@Override
+	public void clearRows(int fromRow, int toRow, int fromCol, int toCol) {
+		int fromWord = fromCol >>> 6;
+		int toWord = (toCol + 63) >>> 6;
+		for (int y = fromRow; y < toRow; y++)
+			Arrays.fill(words, y*wordsPerRow + fromWord, y*wordsPerRow + toWord, 0L);
+	}
+
+}
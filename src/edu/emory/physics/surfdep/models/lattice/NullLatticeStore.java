@@ -0,0 +1,57 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models.lattice;
+
+/**
+ * A store for runs without visualization, which keeps
+ * no slot at all. Only the top site of each column is
+ * known, derived from the model's height array plus one
+ * bit per column marking whether it is occupied. This
+ * answers every query made by deposition rules, which
+ * only inspect the top of a column, but not drawing.
+ * 
+ * @author Tyler Parsons
+ */
+public class NullLatticeStore implements LatticeStore {
+
+	private final int[] height;
+	private final long[] occupied;
+	
+	/**
+	 * @param height the model's column heights
+	 */
+	public NullLatticeStore(int[] height) {
+		this.height = height;
+		occupied = new long[(height.length + 63) >>> 6];
+	}
+	
+	@Override
+	public int get(int x, int y) {
+		return (height[x] == y && (occupied[x >>> 6] & (1L << x)) != 0) ? 1 : 0;
+	}
+
+	@Override
+	public void set(int x, int y) {
+		occupied[x >>> 6] |= 1L << x;
+	}
+
+	@Override
+	public void clearRows(int fromRow, int toRow) {}
+
+	@Override
+	public void clearRows(int fromRow, int toRow, int fromCol, int toCol) {}
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.models.lattice;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Stores the slot outside of the java heap in direct
+ * buffers, using the same word layout as {@link LongLatticeStore}.
+ * Large slots then add nothing to heap size or GC work.
+ * 
+ * A direct buffer is indexed by int, so slots of more than
+ * MAX_BLOCK_WORDS words are split by rows into several
+ * buffers. The rows per buffer is a power of two so that
+ * locating a row costs a shift and a mask.
+ * 
+ * @author Tyler Parsons
+ */
+public class OffHeapLatticeStore implements LatticeStore {
+
+	private final static int MAX_BLOCK_WORDS = 1 << 27;
+	
+	private final LongBuffer[] blocks;
+	private final int rows;
+	private final int wordsPerRow;
+	private final int blockShift;
+	private final int blockMask;
+	
+	public OffHeapLatticeStore(int L, int rows) {
+		this.rows = rows;
+		wordsPerRow = (L + 63) >>> 6;
+		int shift = 31 - Integer.numberOfLeadingZeros(MAX_BLOCK_WORDS/wordsPerRow);
+		blockShift = shift;
+		blockMask = (1 << shift) - 1;
+		blocks = new LongBuffer[(int)((rows + (long)blockMask) >>> shift)];
+		for (int b = 0; b < blocks.length; b++) {
+			int blockRows = Math.min(blockMask + 1, rows - (b << shift));
+			blocks[b] = ByteBuffer.allocateDirect(8*blockRows*wordsPerRow)
+								  .order(ByteOrder.nativeOrder())
+								  .asLongBuffer();
+		}
+	}
+	
+	@Override
+	public int get(int x, int y) {
+		int row = y % rows;
+		return (int)(blocks[row >>> blockShift].get((row & blockMask)*wordsPerRow + (x >>> 6)) >>> x) & 1;
+	}
+
+	@Override
+	public void set(int x, int y) {
+		int row = y % rows;
+		LongBuffer words = blocks[row >>> blockShift];
+		int i = (row & blockMask)*wordsPerRow + (x >>> 6);
+		words.put(i, words.get(i) | (1L << x));
+	}
+
+	@Override
+	public void clearRows(int fromRow, int toRow) {
+		clearWords(fromRow, toRow, 0, wordsPerRow);
+	}
+
+	@Override
+	public void clearRows(int fromRow, int toRow, int fromCol, int toCol) {
+		clearWords(fromRow, toRow, fromCol >>> 6, (toCol + 63) >>> 6);
+	}
+	
+	private void clearWords(int fromRow, int toRow, int fromWord, int toWord) {
+		for (int y = fromRow; y < toRow; y++) {
+			LongBuffer words = blocks[y >>> blockShift];
+			int rowStart = (y & blockMask)*wordsPerRow;
+			for (int i = rowStart + fromWord; i < rowStart + toWord; i++)
+				words.put(i, 0L);
+		}
+	}
+
+}
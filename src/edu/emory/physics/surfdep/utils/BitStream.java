@@ -0,0 +1,132 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.util.Arrays;
+
+/**
+ * BitStream.java
+ * 
+ * Big-endian bit-level reading and writing of byte
+ * arrays, shared by the {@link DoubleCodec}s. Fields
+ * are written and read at most 32 bits at a time.
+ * 
+ * @author Tyler Parsons
+ */
+class BitStream {
+
+	static class Writer {
+		
+		private byte[] out;
+		private int pos;
+		private long acc;
+		private int bits;
+		
+		Writer(int initialCapacity) {
+			out = new byte[Math.max(initialCapacity, 16)];
+		}
+		
+		/**
+		 * Writes the low n bits of value, 0 <= n <= 32.
+		 */
+		void write(long value, int n) {
+			if (pos + 8 > out.length)
+				out = Arrays.copyOf(out, out.length*2);
+			acc = (acc << n) | (value & ((1L << n) - 1));
+			bits += n;
+			while (bits >= 8) {
+				bits -= 8;
+				out[pos++] = (byte)(acc >>> bits);
+			}
+		}
+		
+		void writeBit(boolean bit) {
+			write(bit ? 1 : 0, 1);
+		}
+		
+		void writeLong(long value) {
+			write(value >>> 32, 32);
+			write(value, 32);
+		}
+		
+		/**
+		 * Writes the low n bits of value, 0 <= n <= 64.
+		 */
+		void writeWide(long value, int n) {
+			if (n > 32) {
+				write(value >>> 32, n - 32);
+				write(value, 32);
+			}
+			else
+				write(value, n);
+		}
+		
+		/**
+		 * Pads the last byte with zeros.
+		 * @return the bytes written
+		 */
+		byte[] toByteArray() {
+			if (bits > 0) {
+				write(0, 8 - bits);
+			}
+			return Arrays.copyOf(out, pos);
+		}
+		
+	}
+	
+	static class Reader {
+		
+		private final byte[] in;
+		private int pos;
+		private long acc;
+		private int bits;
+		
+		Reader(byte[] in) {
+			this.in = in;
+		}
+		
+		/**
+		 * Reads n bits, 0 <= n <= 32.
+		 */
+		long read(int n) {
+			while (bits < n) {
+				acc = (acc << 8) | (pos < in.length ? in[pos++] & 0xFF : 0);
+				bits += 8;
+			}
+			bits -= n;
+			return (acc >>> bits) & ((1L << n) - 1);
+		}
+		
+		boolean readBit() {
+			return read(1) == 1;
+		}
+		
+		long readLong() {
+			return (read(32) << 32) | read(32);
+		}
+		
+		/**
+		 * Reads n bits, 0 <= n <= 64.
+		 */
+		long readWide(int n) {
+			if (n > 32)
+				return (read(n - 32) << 32) | read(32);
+			return read(n);
+		}
+		
+	}
+	
+}
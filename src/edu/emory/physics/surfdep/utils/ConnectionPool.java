@@ -0,0 +1,247 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+
+/**
+ * ConnectionPool.java
+ * 
+ * A small pool of JDBC connections to one database, each
+ * with its own {@link StatementCache}. A thread leases one
+ * connection at a time: nested leases on the same thread
+ * share it, and it returns to the pool when the outermost
+ * lease is closed. Connections are returned with auto
+ * commit on and any open transaction rolled back, so no
+ * transaction state passes from one lease to the next.
+ * 
+ * @author Tyler Parsons
+ */
+public class ConnectionPool {
+
+	/**
+	 * Default upper bound on open connections.
+	 */
+	public final static int DEFAULT_MAX_SIZE = 8;
+	
+	private final String url;
+	private final int maxSize;
+	
+	/**
+	 * Connections not leased, most recently returned last.
+	 */
+	private final ArrayDeque<Lease> idle;
+	
+	/**
+	 * The lease held by each thread, if any.
+	 */
+	private final ThreadLocal<Lease> current;
+	
+	private int size;
+	private int inUse;
+	private int peakInUse;
+	private long leases;
+	private long waits;
+	private long waitNanos;
+	private long discarded;
+	
+	/**
+	 * @param url		JDBC url, including credentials
+	 * @param driver	driver class, loaded by reflection
+	 * @param maxSize	most connections open at once
+	 */
+	public ConnectionPool(String url, String driver, int maxSize) {
+		this.url = url;
+		this.maxSize = maxSize;
+		idle = new ArrayDeque<Lease>();
+		current = new ThreadLocal<Lease>();
+		try {
+			Class.forName(driver);
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Leases a connection to the calling thread, waiting
+	 * for one to be returned if maxSize are leased. Must
+	 * be closed by the same thread, e.g. with
+	 * try-with-resources.
+	 */
+	public Lease lease() throws SQLException {
+		
+		Lease lease = current.get();
+		if (lease != null) {
+			lease.holds++;
+			return lease;
+		}
+		
+		lease = acquire();
+		lease.holds = 1;
+		current.set(lease);
+		return lease;
+	}
+	
+	private synchronized Lease acquire() throws SQLException {
+		
+		leases++;
+		if (idle.isEmpty() && size >= maxSize) {
+			waits++;
+			long start = System.nanoTime();
+			while (idle.isEmpty() && size >= maxSize) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted waiting for a connection", e);
+				}
+			}
+			waitNanos += System.nanoTime() - start;
+		}
+		
+		Lease lease = idle.pollLast();
+		if (lease == null) {
+			lease = new Lease(DriverManager.getConnection(url));
+			size++;
+		}
+		inUse++;
+		peakInUse = Math.max(peakInUse, inUse);
+		return lease;
+	}
+	
+	/**
+	 * Resets the transaction state of lease and returns it
+	 * to the pool, or closes it if it is no longer usable.
+	 */
+	private void release(Lease lease) {
+		
+		boolean usable;
+		try {
+			if (!lease.connection.getAutoCommit()) {
+				lease.connection.rollback();
+				lease.connection.setAutoCommit(true);
+			}
+			usable = !lease.connection.isClosed();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			usable = false;
+		}
+		if (!usable)
+			lease.closeConnection();
+		
+		synchronized (this) {
+			inUse--;
+			if (usable) {
+				idle.addLast(lease);
+			}
+			else {
+				size--;
+				discarded++;
+			}
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Closes every idle connection. Leased connections
+	 * are closed when they are returned.
+	 */
+	public synchronized void close() {
+		for (Lease lease: idle)
+			lease.closeConnection();
+		size -= idle.size();
+		idle.clear();
+	}
+	
+	
+/***********
+ * Metrics *
+ ***********/
+	
+	public synchronized int getSize()			{return size;}
+	public synchronized int getInUse()			{return inUse;}
+	public synchronized int getPeakInUse()		{return peakInUse;}
+	public synchronized long getLeases()		{return leases;}
+	public synchronized long getWaits()			{return waits;}
+	public synchronized long getWaitMillis()	{return waitNanos/1000000L;}
+	public synchronized long getDiscarded()		{return discarded;}
+	
+	@Override
+	public synchronized String toString() {
+		return	"connections="+size+" inUse="+inUse+" peakInUse="+peakInUse+
+				" leases="+leases+" waits="+waits+" waitMs="+getWaitMillis()+
+				" discarded="+discarded;
+	}
+	
+	
+/******************
+ * Nested Classes *
+ ******************/
+	
+	/**
+	 * A connection leased to one thread, along with the
+	 * cache of its prepared statements.
+	 */
+	public class Lease implements AutoCloseable {
+		
+		private final Connection connection;
+		private final StatementCache statements;
+		
+		/**
+		 * Nested leases by the holding thread.
+		 */
+		private int holds;
+		
+		private Lease(Connection connection) {
+			this.connection = connection;
+			statements = new StatementCache(connection);
+		}
+		
+		public Connection getConnection() {
+			return connection;
+		}
+		
+		public StatementCache getStatements() {
+			return statements;
+		}
+		
+		/**
+		 * Ends this lease, returning the connection to the
+		 * pool if it is the holding thread's outermost lease.
+		 */
+		@Override
+		public void close() {
+			if (--holds > 0)
+				return;
+			current.remove();
+			release(this);
+		}
+		
+		private void closeConnection() {
+			statements.close();
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		
+	}
+	
+}
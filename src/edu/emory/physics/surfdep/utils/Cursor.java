@@ -0,0 +1,73 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Cursor.java
+ * 
+ * A forward-only, read-only query result that is fetched
+ * from the server a few rows at a time as it is iterated,
+ * rather than buffered whole in memory. Owns its statement
+ * and holds its thread's connection lease, so it must be
+ * closed by that thread, e.g. with try-with-resources:
+ * 		try (Cursor cursor = db.stream(sql)) {
+ * 			ResultSet rows = cursor.getResultSet();
+ * 			while (rows.next()) ...
+ * 		}
+ * 
+ * @author Tyler Parsons
+ */
+public class Cursor implements AutoCloseable {
+
+	private final Statement stmt;
+	private final ResultSet results;
+	private final ConnectionPool.Lease lease;
+	
+	Cursor(Statement stmt, ResultSet results, ConnectionPool.Lease lease) {
+		this.stmt = stmt;
+		this.results = results;
+		this.lease = lease;
+	}
+	
+	public ResultSet getResultSet() {
+		return results;
+	}
+	
+	public boolean next() throws SQLException {
+		return results.next();
+	}
+	
+	/**
+	 * Closes the result set and its statement, releasing
+	 * the server-side cursor, then ends the lease.
+	 */
+	@Override
+	public void close() {
+		try {
+			results.close();
+			stmt.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			lease.close();
+		}
+	}
+	
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * DoubleCodec.java
+ * 
+ * Encodes runs of doubles, such as a chunk of an
+ * {@link EmbeddedDBArray} page, into compact byte arrays
+ * for storage. Encodings are self-describing, i.e.
+ * decoding needs nothing but the bytes.
+ * 
+ * @author Tyler Parsons
+ */
+public interface DoubleCodec {
+
+	/**
+	 * @return src[from] ... src[from + n - 1], encoded
+	 */
+	public byte[] encode(double[] src, int from, int n);
+	
+	/**
+	 * Decodes data into dst, starting at dst[from].
+	 * @return the number of values decoded
+	 */
+	public int decode(byte[] data, double[] dst, int from);
+	
+	/**
+	 * @return whether decoded values equal those encoded
+	 */
+	public boolean isLossless();
+	
+}
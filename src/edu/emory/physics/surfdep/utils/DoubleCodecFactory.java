@@ -0,0 +1,65 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * Creates {@link DoubleCodec}s from the numeric codec
+ * types stored in model parameters.
+ * 
+ * @author Tyler Parsons
+ */
+public class DoubleCodecFactory {
+
+	public final static int XOR = 0;
+	public final static int FLOAT32 = 1;
+	public final static int QUANTIZED = 2;
+	
+	/**
+	 * @param type		codec type
+	 * @param quantum	resolution of QUANTIZED codecs,
+	 * 					ignored by the others
+	 */
+	public DoubleCodec createDoubleCodec(int type, double quantum) {
+		if (type == XOR) {
+			return new XorDoubleCodec();
+		}
+		else if (type == FLOAT32) {
+			return new Float32DoubleCodec();
+		}
+		else if (type == QUANTIZED) {
+			return new QuantizedDoubleCodec(quantum);
+		}
+		// Declare other types here
+		// ...
+		else {
+			throw new IllegalArgumentException("Unknown codec type "+type);
+		}
+	}
+	
+	/**
+	 * @return the type of codec
+	 */
+	public static int typeOf(DoubleCodec codec) {
+		if (codec instanceof Float32DoubleCodec)
+			return FLOAT32;
+		if (codec instanceof XorDoubleCodec)
+			return XOR;
+		if (codec instanceof QuantizedDoubleCodec)
+			return QUANTIZED;
+		throw new IllegalArgumentException("Unknown codec "+codec.getClass().getName());
+	}
+	
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import edu.emory.physics.surfdep.utils.EmbeddedDBArray.DBOperationCallback;
+
+/**
+ * DoubleSeries.java
+ * 
+ * An append-only series of doubles, such as the width of a
+ * model at each step, addressed by long indices so that it
+ * can grow past the 2^31 elements of a Java array.
+ * Implementations decide where values live and when they are
+ * paged to and from storage; callbacks bracket any such
+ * transfer so that callers can report on it. Indices at or
+ * past {@link #size()} read as 0, while negative indices
+ * throw IndexOutOfBoundsException.
+ * 
+ * @author Tyler Parsons
+ */
+public interface DoubleSeries {
+
+	/**
+	 * Appends value at index {@link #size()}.
+	 */
+	public void record(double value);
+	
+	/**
+	 * @return the value recorded at index
+	 */
+	public double get(long index);
+	
+	/**
+	 * Appends the first n values of src.
+	 */
+	public void recordAll(double[] src, int n);
+	
+	/**
+	 * Copies the values recorded at indices from
+	 * (inclusive) to to (exclusive) into dst, from 0.
+	 */
+	public void getRange(long from, long to, double[] dst);
+	
+	/**
+	 * Hands the values recorded at indices from (inclusive)
+	 * to to (exclusive) to consumer, one block at a time.
+	 */
+	public void forEachRange(long from, long to, RangeConsumer consumer);
+	
+	/**
+	 * @return the number of values recorded
+	 */
+	public long size();
+	
+	/**
+	 * Writes any values held only in memory to storage.
+	 */
+	public void save();
+	
+	/**
+	 * Deletes every stored value and releases the memory
+	 * held by this series, which must not be used again.
+	 */
+	public void delete();
+	
+	/**
+	 * Receives a block of a series, without boxing or
+	 * a call per value.
+	 */
+	public interface RangeConsumer {
+		
+		/**
+		 * @param index		series index of values[from]
+		 * @param values	holds the block in [from, to); only
+		 * 					valid until accept returns
+		 */
+		public void accept(long index, double[] values, int from, int to);
+		
+	}
+	
+	public void registerPushCallback(DBOperationCallback callback);
+	
+	public void registerPullCallback(DBOperationCallback callback);
+	
+}
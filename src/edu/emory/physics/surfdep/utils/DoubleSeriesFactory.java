@@ -0,0 +1,66 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.io.File;
+
+/**
+ * Creates {@link DoubleSeries} from the numeric store
+ * types stored in model parameters. Files of MAPPED_FILE
+ * series are created in the directory named by the
+ * surfdep.seriesDir system property, if set, otherwise
+ * in the default temporary-file directory.
+ * 
+ * @author Tyler Parsons
+ */
+public class DoubleSeriesFactory {
+
+	public final static int EMBEDDED_DB = 0;
+	public final static int MAPPED_FILE = 1;
+	
+	public final static String DIRECTORY_PROPERTY = "surfdep.seriesDir";
+	
+	/**
+	 * @param type				store type
+	 * @param suggestedCapacity	expected number of values
+	 * @param codec				encodes pages of EMBEDDED_DB series,
+	 * 							ignored by MAPPED_FILE series, which
+	 * 							are stored raw
+	 * @param cacheBytes		memory budget for the pages of
+	 * 							EMBEDDED_DB series, while the OS
+	 * 							caches MAPPED_FILE series
+	 * @param backend			where EMBEDDED_DB series store their
+	 * 							pages, see {@link PageStoreFactory}
+	 * @param series			unique id of the series in its backend
+	 */
+	public DoubleSeries createDoubleSeries(int type, long suggestedCapacity,
+			DoubleCodec codec, long cacheBytes, int backend, int series) {
+		if (type == EMBEDDED_DB) {
+			return new EmbeddedDBArray(suggestedCapacity, codec, cacheBytes,
+					new PageStoreFactory().createPageStore(backend, series));
+		}
+		else if (type == MAPPED_FILE) {
+			String directory = System.getProperty(DIRECTORY_PROPERTY);
+			return new MappedDoubleArray(directory != null ? new File(directory) : null);
+		}
+		// Declare other types here
+		// ...
+		else {
+			throw new IllegalArgumentException("Unknown series type "+type);
+		}
+	}
+	
+}
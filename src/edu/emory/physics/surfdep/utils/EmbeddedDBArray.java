@@ -15,59 +15,119 @@
  */
 package edu.emory.physics.surfdep.utils;
 	
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
-public class EmbeddedDBArray {
+public class EmbeddedDBArray implements DoubleSeries {
 
 	public final static long MAX_ARRAY_SIZE = (long)((Integer.MAX_VALUE) >> 6);
 	
+	/**
+	 * Default memory budget for page buffers, enough
+	 * for two full pages.
+	 */
+	public final static long DEFAULT_CACHE_BYTES = 2*MAX_ARRAY_SIZE*Double.BYTES;
+	
+	/**
+	 * Values per stored chunk. Pages are stored and read
+	 * as runs of chunks, each encoded separately.
+	 */
+	public final static int CHUNK_SIZE = 1 << 14;
+	
+	/**
+	 * Chunk indices reserved for each page, such that page
+	 * p starts at chunk {@code p*CHUNKS_PER_PAGE}.
+	 */
+	final static int CHUNKS_PER_PAGE = (int)((MAX_ARRAY_SIZE + CHUNK_SIZE - 1)/CHUNK_SIZE);
+	
 	final static int DUMMY_OFFSET = -1;
+	
+	/**
+	 * Number of page buffers of the memory budget set aside
+	 * from the cache, if the budget holds more than one page,
+	 * for full pages that are written in the background while
+	 * the cache is refilled, or read ahead of use.
+	 */
+	final static int BUFFER_COUNT = 2;
+	
+	/**
+	 * Seconds an idle writer thread is kept alive.
+	 */
+	final static long WRITER_KEEP_ALIVE = 60L;
 
 	/**
-	 * Handles connections to the MySQL database with which
-	 * this EmbeddedDBArray stores and accesses its values.
+	 * The database with which this EmbeddedDBArray
+	 * stores and accesses its values.
 	 */
-	private MySQLClient dbClient;
+	private PageStore store;
 	
 	/**
-	 * Stores a "working copy" of a section of the database,
-	 * which can be modified and accessed in memory and then
-	 * pushed to the database.
+	 * Encodes chunks for storage as a blob each.
 	 */
-	private double[] local;
+	private DoubleCodec codec;
 	
 	/**
-	 * Indicates the position in the database corresponding 
-	 * to the start of the array stored in memory.  Stored 
-	 * as an index of an array of size MAX_ARRAY_SIZE in the
-	 * pseudo two-dimensional array of the database, such that
-	 * {@code ((long)currentOffset)*MAX_ARRAY_SIZE} gives the actual
-	 * position of the first element of the array in the db.
+	 * "Working copies" of sections of the database, which
+	 * can be modified and accessed in memory and then pushed
+	 * to the database. Keyed by offset, in order of last
+	 * access, so that the least recently used page is
+	 * evicted first.
 	 */
-	private int currentOffset;
+	private LinkedHashMap<Integer, Page> pages;
+	
+	/**
+	 * Number of page buffers that fit in the memory budget,
+	 * counting those being written or read ahead, and the
+	 * number of them that may hold cached pages.
+	 */
+	private int maxBuffers;
+	private int maxPages;
+	
+	/**
+	 * Length of each page, the suggested capacity rounded
+	 * up to whole chunks, but no more than MAX_ARRAY_SIZE.
+	 */
+	private int pageLength;
 	
 	/**
-	 * Stores a change flag for each db section, indicating
-	 * whether the database has been updated since the array
-	 * was last populated.
+	 * The page last accessed, and its offset. Stored as an
+	 * index of an array of size pageLength in the pseudo
+	 * two-dimensional array of the database, such that
+	 * {@code ((long)currentOffset)*pageLength} gives the actual
+	 * position of the first element of the page in the db.
 	 */
-	private ArrayList<Boolean> changeList;
+	private Page current;
+	private int currentOffset;
 	
 	/**
-	 * Stores a flag whether each db section has been used for
-	 * the first time. This eliminates a costly, unnecessary
-	 * pull call when the section is used for the first time.
+	 * Flags the db sections that have been pushed at least
+	 * once. Sections never pushed are not pulled, which
+	 * eliminates a costly, unnecessary pull call when the
+	 * section is used for the first time.
 	 */
-	private ArrayList<Boolean> useList;
+	private BitSet storedPages;
 	
 	/**
 	 * Tracks how many rows have been added to the database.
 	 */
 	private long recordsAdded;
 	
+	/**
+	 * Page lookups, made whenever an access moves
+	 * to another page, that did and did not find
+	 * the page in memory.
+	 */
+	private long hits;
+	private long misses;
+	
 	/**
 	 * Callback interface to implement instructions upon the start
 	 * and conclusion of pushing the local array to the database.
@@ -80,25 +140,90 @@ public class EmbeddedDBArray {
 	 */
 	private DBOperationCallback pullCallback;
 	
+	/**
+	 * Writes evicted pages to the database in the background,
+	 * in the order they are handed to it, while recording
+	 * continues into a spare buffer. Also reads pages ahead
+	 * of sequential scans, after any earlier writes.
+	 */
+	private ThreadPoolExecutor writer;
+	
+	/**
+	 * Buffers of evicted pages, ready to be filled again.
+	 * Taking from it blocks when every buffer is either
+	 * cached or still being written.
+	 */
+	private ArrayBlockingQueue<double[]> spareBuffers;
+	
+	/**
+	 * Number of page buffers allocated so far. Buffers are
+	 * only allocated as pages are first used.
+	 */
+	private int buffersAllocated;
+	
+	/**
+	 * The most recently submitted push or read-ahead. The
+	 * writer is single-threaded, so waiting on it waits for all.
+	 */
+	private Future<?> lastTask;
+	
+	/**
+	 * Offset of the page last returned by page(), used
+	 * to detect sequential access.
+	 */
+	private int lastOffset;
+	
+	/**
+	 * The page being read ahead, if any, and its read.
+	 */
+	private Page readAhead;
+	private Future<?> readAheadTask;
+	
+	/**
+	 * Page lookups that missed the cache but were
+	 * served by a page read ahead of time.
+	 */
+	private long readAheadHits;
+	
 	
 	public EmbeddedDBArray (long suggestedCapacity) {
+		this(suggestedCapacity, new XorDoubleCodec(), DEFAULT_CACHE_BYTES, new MySQLPageStore());
+	}
 	
-		dbClient = MySQLClient.getSingleton("depositions", "bdm", "d3po$ition$");
-		dbClient.clearWidthTable();
+	/**
+	 * @param suggestedCapacity	expected number of values
+	 * @param codec				encodes pages for storage
+	 * @param cacheBytes		memory budget for page buffers,
+	 * 							including those being written
+	 * 							or read ahead, which holds at
+	 * 							least one page
+	 * @param store				where pages are stored
+	 */
+	public EmbeddedDBArray (long suggestedCapacity, DoubleCodec codec, long cacheBytes, PageStore store) {
 	
-		local = new double[(int)(suggestedCapacity < MAX_ARRAY_SIZE ? suggestedCapacity : MAX_ARRAY_SIZE)];
-		
-		int listSize = (int)(suggestedCapacity/MAX_ARRAY_SIZE) + 1;
-		changeList = new ArrayList<Boolean>(listSize);
-		useList = new ArrayList<Boolean>(listSize);
-		
-		for (int i = 0; i < listSize; i++) {
-			changeList.add(new Boolean(false));
-			useList.add(new Boolean(false));
-		}
+		this.codec = codec;
+		this.store = store;
+	
+		long chunks = (Math.max(suggestedCapacity, 1L) + CHUNK_SIZE - 1)/CHUNK_SIZE;
+		pageLength = (int)Math.min(chunks*CHUNK_SIZE, MAX_ARRAY_SIZE);
+		maxBuffers = (int)Math.max(1L, Math.min(Integer.MAX_VALUE/2, cacheBytes/(((long)pageLength)*Double.BYTES)));
+		maxPages = Math.max(1, maxBuffers - BUFFER_COUNT);
+		pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true);
+		storedPages = new BitSet();
 		
 		currentOffset = DUMMY_OFFSET;	// Forces currentOffset to be reset when any offset is accessed
+		lastOffset = DUMMY_OFFSET;
 		recordsAdded = 0L;
+		
+		writer = new ThreadPoolExecutor(1, 1, WRITER_KEEP_ALIVE, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(BUFFER_COUNT + 2*maxPages + 1), (Runnable r) -> {
+					Thread t = new Thread(r, "EmbeddedDBArray writer");
+					t.setDaemon(true);
+					return t;
+				});
+		writer.allowCoreThreadTimeOut(true);
+		spareBuffers = new ArrayBlockingQueue<double[]>(maxBuffers);
+		buffersAllocated = 0;
 	}
 	
 	/**
@@ -106,66 +231,266 @@ public class EmbeddedDBArray {
 	 */
 	public void record(double value) {
 	
-		int newOffset = (int)(recordsAdded/MAX_ARRAY_SIZE);
+		int newOffset = (int)(recordsAdded/pageLength);
 	
 		if (newOffset != currentOffset) {
-			
-			// Push any changes for previous currentOffset to database
-			if (currentOffset != DUMMY_OFFSET
-			&&  changeList.get(currentOffset)) {
-				push(currentOffset);
-			}
-			
-			// Populate local array from database
-			if (useList.get(newOffset)) {
-				pull(newOffset);
-			}
-			// Indicate that this array has been used
-			else {
-				useList.remove(newOffset);
-				useList.add(newOffset, new Boolean(true));
-			}
-		
-			// Update currentOffset
+			current = page(newOffset);
 			currentOffset = newOffset;
 		}
 		
-		// Set value in working copy i.e. array stored in memory, indicate change
-		local[(int)(recordsAdded++ % MAX_ARRAY_SIZE)] = value;
-		changeList.remove(currentOffset);
-		changeList.add(currentOffset, new Boolean(true));
+		// Set value in working copy i.e. page stored in memory, indicate change
+		current.values[(int)(recordsAdded++ % pageLength)] = value;
+		current.dirty = true;
 	}
 	
 	
 	public double get(long index) {
+		
+		if (index < 0)
+			throw new IndexOutOfBoundsException("Index "+index);
+		if (index >= recordsAdded)
+			return 0;
 	
-		int newOffset = (int)(index/MAX_ARRAY_SIZE);
+		int newOffset = (int)(index/pageLength);
 	
 		if (newOffset != currentOffset) {
+			current = page(newOffset);
+			currentOffset = newOffset;
+		}
+
+		// Return value from working copy i.e. page stored in memory
+		return current.values[(int)(index % pageLength)];
+	}
+	
+	public long size() {
+		return recordsAdded;
+	}
+	
+	/**
+	 * Copies src into its pages a page at a time.
+	 */
+	public void recordAll(double[] src, int n) {
+		
+		int i = 0;
+		while (i < n) {
+			int newOffset = (int)(recordsAdded/pageLength);
+			if (newOffset != currentOffset) {
+				current = page(newOffset);
+				currentOffset = newOffset;
+			}
+			int start = (int)(recordsAdded % pageLength);
+			int length = Math.min(n - i, current.values.length - start);
+			System.arraycopy(src, i, current.values, start, length);
+			current.dirty = true;
+			recordsAdded += length;
+			i += length;
+		}
+	}
+	
+	public void getRange(long from, long to, double[] dst) {
+		final int[] position = {0};
+		forEachRange(from, to, (long index, double[] values, int start, int end) -> {
+			System.arraycopy(values, start, dst, position[0], end - start);
+			position[0] += end - start;
+		});
+	}
+	
+	/**
+	 * Hands consumer one page, or part of one, at a time,
+	 * then a block of zeros for any indices not recorded.
+	 */
+	public void forEachRange(long from, long to, RangeConsumer consumer) {
+		
+		if (from < 0)
+			throw new IndexOutOfBoundsException("Index "+from);
+		
+		long recordedTo = Math.min(to, recordsAdded);
+		while (from < recordedTo) {
+			int newOffset = (int)(from/pageLength);
+			if (newOffset != currentOffset) {
+				current = page(newOffset);
+				currentOffset = newOffset;
+			}
+			int start = (int)(from % pageLength);
+			int end = (int)Math.min(current.values.length, start + (recordedTo - from));
+			consumer.accept(from, current.values, start, end);
+			from += end - start;
+		}
+		
+		if (from < to) {
+			double[] zeros = new double[(int)Math.min(CHUNK_SIZE, to - from)];
+			for (; from < to; from += zeros.length)
+				consumer.accept(from, zeros, 0, (int)Math.min(zeros.length, to - from));
+		}
+	}
+	
+	
+/****************
+ * Page Caching *
+ ****************/
+	
+	/**
+	 * A section of the database held in memory.
+	 */
+	private static class Page {
+		
+		final int offset;
+		final double[] values;
+		
+		/**
+		 * Whether values has changed since it was
+		 * last populated from or pushed to the db.
+		 */
+		boolean dirty;
+		
+		Page(int offset, double[] values) {
+			this.offset = offset;
+			this.values = values;
+		}
+		
+	}
+	
+	/**
+	 * Returns the page at offset, from the cache if it
+	 * is there, otherwise populated from the database,
+	 * evicting the least recently used page if needed.
+	 * Moving on to the next page reads the one after it
+	 * ahead in the background.
+	 */
+	private Page page(int offset) {
+		
+		Page page = pages.get(offset);
+		if (page != null) {
+			hits++;
+		}
+		else {
+			misses++;
 			
-			// Push any changes for previous currentOffset to database
-			if (currentOffset != DUMMY_OFFSET
-			&&  changeList.get(currentOffset)) {
-				push(currentOffset);
+			// Take the read-ahead page if it is this one, otherwise
+			// discard it so that its buffer can be reused
+			Page ahead = awaitReadAhead();
+			if (ahead != null && ahead.offset != offset) {
+				spareBuffers.offer(ahead.values);
+				ahead = null;
 			}
 			
-			// Populate local array from database
-			if (useList.get(newOffset)) {
-				pull(newOffset);
+			if (pages.size() >= maxPages) {
+				Iterator<Page> eldest = pages.values().iterator();
+				evict(eldest.next());
+				eldest.remove();
+			}
+			
+			if (ahead != null) {
+				readAheadHits++;
+				page = ahead;
 			}
-			// Indicate that this array has been used
 			else {
-				useList.remove(newOffset);
-				useList.add(newOffset, new Boolean(true));
+				page = new Page(offset, takeBuffer());
+				if (storedPages.get(offset))
+					pull(page);
+				else
+					Arrays.fill(page.values, 0);
 			}
+			pages.put(offset, page);
+		}
 		
-			// Update currentOffset
-			currentOffset = newOffset;
+		if (offset == lastOffset + 1)
+			submitReadAhead(offset + 1);
+		lastOffset = offset;
+		return page;
+	}
+	
+	/**
+	 * Starts reading the page at offset in the background,
+	 * unless it is already in memory, has never been stored
+	 * or no buffer is free for it.
+	 */
+	private void submitReadAhead(int offset) {
+		
+		if (readAhead != null || pages.containsKey(offset) || !storedPages.get(offset))
+			return;
+		
+		double[] buffer = spareBuffers.poll();
+		if (buffer == null) {
+			if (buffersAllocated >= maxBuffers)
+				return;
+			buffersAllocated++;
+			buffer = new double[pageLength];
 		}
 		
-
-		// Return value from working copy i.e. array stored in memory
-		return local[(int)(index%MAX_ARRAY_SIZE)];
+		final Page page = new Page(offset, buffer);
+		final int n = recordedIn(offset);
+		readAhead = page;
+		readAheadTask = lastTask = writer.submit(() -> {
+			read(page, n);
+		});
+	}
+	
+	/**
+	 * Waits for the read-ahead page, if any, and returns it.
+	 */
+	private Page awaitReadAhead() {
+		
+		Page page = readAhead;
+		if (page == null)
+			return null;
+		
+		await(readAheadTask);
+		readAhead = null;
+		readAheadTask = null;
+		return page;
+	}
+	
+	/**
+	 * Hands a dirty page to the writer, or frees its
+	 * buffer immediately if it is clean.
+	 */
+	private void evict(Page page) {
+		if (page == current) {
+			current = null;
+			currentOffset = DUMMY_OFFSET;
+		}
+		if (page.dirty)
+			submitPush(page, true);
+		else
+			spareBuffers.offer(page.values);
+	}
+	
+	/**
+	 * Returns a free page buffer, allocating one if the
+	 * budget allows and otherwise waiting for the writer
+	 * to free one.
+	 */
+	private double[] takeBuffer() {
+		
+		double[] buffer = spareBuffers.poll();
+		if (buffer != null)
+			return buffer;
+		if (buffersAllocated < maxBuffers) {
+			buffersAllocated++;
+			return new double[pageLength];
+		}
+		
+		try {
+			return spareBuffers.take();
+		} catch (InterruptedException e) {
+			// Wait out the writes instead
+			Thread.currentThread().interrupt();
+			flush();
+			return spareBuffers.poll();
+		}
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+	
+	public long getReadAheadHits() {
+		return readAheadHits;
 	}
 	
 	
@@ -174,40 +499,47 @@ public class EmbeddedDBArray {
  ****************/
 
 
-	private void pull(int offset) {
+	private void pull(Page page) {
+		
+		// Pages in flight must reach the db before it is read
+		flush();
+		read(page, recordedIn(page.offset));
+	}
+	
+	/**
+	 * Number of values recorded in the page at offset.
+	 */
+	private int recordedIn(int offset) {
+		return (int)Math.min(pageLength, Math.max(0L, recordsAdded - ((long)offset)*pageLength));
+	}
+	
+	/**
+	 * Populates page from the first n values stored for it.
+	 */
+	private void read(final Page page, int n) {
 		
 		// Invoke opStart callback
 		if (pullCallback != null)
 			pullCallback.onOperationStarted();
 	
-		System.out.println("pull("+offset+") called.");
+		System.out.println("pull("+page.offset+") called.");
 		long start = System.currentTimeMillis();
 	
-		ResultSet records = dbClient.queryWidthRecords(
-			((long)offset)	* MAX_ARRAY_SIZE,
-			((long)offset+1)* MAX_ARRAY_SIZE
-		);
+		// Populate page from the chunks this series has recorded,
+		// ignoring any left in the store by an earlier series
+		final long firstChunk = ((long)page.offset)*CHUNKS_PER_PAGE;
+		final long[] index = {0};
+		Arrays.fill(page.values, 0);
+		store.readChunks(firstChunk, (n + CHUNK_SIZE - 1)/CHUNK_SIZE,
+				(long chunk, byte[] data) -> {
+					index[0] += codec.decode(data, page.values, (int)(chunk - firstChunk)*CHUNK_SIZE);
+				});
+		System.out.println("Read "+index[0]+" records from db.");
 		
-		// Populate array from ResultSet, fill remaining indices with NaN
-		int index = 0;
-		try {
-		
-			while(records.next()) {
-				local[index++] = records.getDouble("w");
-			}
-			System.out.println("Read "+index+" records from db.");
-			// Let remaining array elements be 0
-			
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		
-		// Update changeList
-		changeList.remove(offset);
-		changeList.add(offset, new Boolean(false));
+		page.dirty = false;
 		
 		long opTime = System.currentTimeMillis() - start;
-		System.out.println("pull("+offset+") completed in "+opTime+"ms.");
+		System.out.println("pull("+page.offset+") completed in "+opTime+"ms.");
 		
 		// Invoke opCompleted callback
 		if (pullCallback != null)
@@ -215,32 +547,117 @@ public class EmbeddedDBArray {
 		
 	}
 	
-	private void push(int offset) {
+	/**
+	 * Queues page to be written to the database.
+	 * @param recycle	whether to return the page's buffer
+	 * 					to the spares once written
+	 */
+	private void submitPush(Page page, final boolean recycle) {
 		
-		// Invoke opStart callback
-		if (pushCallback != null)
-			pushCallback.onOperationStarted();
+		final int offset = page.offset;
+		final double[] values = page.values;
+		page.dirty = false;
+		storedPages.set(offset);
+		
+		// Only the recorded part of the page is stored
+		final int n = recordedIn(offset);
+		
+		lastTask = writer.submit(() -> {
+			
+			// Invoke opStart callback
+			if (pushCallback != null)
+				pushCallback.onOperationStarted();
+		
+			System.out.println("push("+offset+") called.");
+			long start = System.currentTimeMillis();
+		
+			try {
+				int chunks = (n + CHUNK_SIZE - 1)/CHUNK_SIZE;
+				int[] counts = new int[chunks];
+				byte[][] data = new byte[chunks][];
+				long bytes = 0;
+				for (int i = 0; i < chunks; i++) {
+					counts[i] = Math.min(CHUNK_SIZE, n - i*CHUNK_SIZE);
+					data[i] = codec.encode(values, i*CHUNK_SIZE, counts[i]);
+					bytes += data[i].length;
+				}
+				store.writeChunks(((long)offset)*CHUNKS_PER_PAGE, DoubleCodecFactory.typeOf(codec), counts, data);
+				System.out.println("Encoded "+n+" records in "+chunks+" chunks of "+bytes+" bytes.");
+			} finally {
+				if (recycle)
+					spareBuffers.offer(values);
+			}
 	
-		System.out.println("push("+offset+") called.");
-		long start = System.currentTimeMillis();
+			long opTime = System.currentTimeMillis() - start;
+			System.out.println("push("+offset+") completed in "+opTime+"ms.");
+			
+			// Invoke opCompleted callback
+			if (pushCallback != null)
+				pushCallback.onOperationCompleted(opTime);
+		});
+	}
 	
-		dbClient.addWidthRecords(local);
+	/**
+	 * Waits for all pushed pages to be written, and any
+	 * page being read ahead to be read.
+	 */
+	public void flush() {
 		
-		// Update changeList
-		changeList.remove(offset);
-		changeList.add(offset, new Boolean(false));
-
-		long opTime = System.currentTimeMillis() - start;
-		System.out.println("push("+offset+") completed in "+opTime+"ms.");
+		if (lastTask == null)
+			return;
 		
-		// Invoke opCompleted callback
-		if (pushCallback != null)
-			pushCallback.onOperationCompleted(opTime);
+		await(lastTask);
+		lastTask = null;
+	}
+	
+	/**
+	 * Waits for task to complete, uninterruptibly.
+	 */
+	private void await(Future<?> task) {
 		
+		boolean interrupted = false;
+		while (true) {
+			try {
+				task.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				break;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
 	}
 	
+	/**
+	 * Waits for pending writes, then deletes this series'
+	 * stored pages and drops its cache and buffers.
+	 */
+	public void delete() {
+		flush();
+		readAhead = null;
+		readAheadTask = null;
+		writer.shutdown();
+		store.clear();
+		pages.clear();
+		spareBuffers.clear();
+		storedPages.clear();
+		current = null;
+		currentOffset = DUMMY_OFFSET;
+	}
+	
+	/**
+	 * Writes every dirty cached page and waits for them
+	 * and any pages still being written.
+	 */
 	public void save() {
-		push(currentOffset);
+		// Cached pages stay in use, so they are written in place
+		for (Page page: pages.values())
+			if (page.dirty)
+				submitPush(page, false);
+		flush();
 	}
 
 	
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * Float32DoubleCodec.java
+ * 
+ * Lossy XOR encoding of values rounded to single
+ * precision, whose 29 low mantissa bits are zero and
+ * so never stored. Keeps about 7 significant digits.
+ * 
+ * @author Tyler Parsons
+ */
+public class Float32DoubleCodec extends XorDoubleCodec {
+
+	@Override
+	protected double round(double value) {
+		return (double)(float)value;
+	}
+	
+	@Override
+	public boolean isLossless() {
+		return false;
+	}
+	
+}
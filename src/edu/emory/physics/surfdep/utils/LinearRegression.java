@@ -15,12 +15,6 @@
  */
 package edu.emory.physics.surfdep.utils;
 
-import java.awt.Color;
-import java.awt.Graphics;
-
-import org.opensourcephysics.display.Drawable;
-import org.opensourcephysics.display.DrawingPanel;
-
 /**
  * LinearRegression.java
  * Created:	7 May 2014
@@ -32,13 +26,23 @@ import org.opensourcephysics.display.DrawingPanel;
  * lyze continuous and constant functions,
  * and arrays.
  */
-public class LinearRegression implements Drawable{
+public class LinearRegression {
 	
 	protected double m;
 	protected double b;
 	protected double R2;
 	protected double dx;
 	
+	/**
+	 * Running sums of accumulated points.
+	 */
+	protected long n;
+	protected double f_sum;
+	protected double g_sum;
+	protected double fg_sum;
+	protected double f2_sum;
+	protected double g2_sum;
+	
 	public interface Function {
 		public double val(double x);
 	}
@@ -106,21 +110,66 @@ public class LinearRegression implements Drawable{
 	}
 	
 	
-/******************
- * Plot Utilities *
- ******************/
+/*****************************
+ * Regression for Point Sets *
+ *****************************/
+	
+	/**
+	 * Creates an empty regression, to which points
+	 * are added before calling {@link #solve()}.
+	 */
+	public LinearRegression() {
+	}
 	
-		public void draw(DrawingPanel dp, Graphics g) {
-			
-			int x1 = dp.xToPix(dp.getXMin());
-			int y1 = dp.yToPix(m*dp.getXMin() + b);
-			int x2 = dp.xToPix(dp.getXMax());
-			int y2 = dp.yToPix(m*dp.getXMax() + b);
-			
-			g.setColor(Color.BLACK);
-			g.drawLine(x1, y1, x2, y2);
+	/**
+	 * Creates a linear regression of g against f.
+	 * @param f - independent variable
+	 * @param g - dependent variable
+	 */
+	public LinearRegression(double[] f, double[] g) {
+		add(f, g, 0, f.length);
+		solve();
+	}
+	
+	/**
+	 * Adds the point (f, g), unless either is infinite.
+	 */
+	public void add(double f, double g) {
+		if (!Double.isInfinite(f) && !Double.isInfinite(g)) {
+			n++;
+			f_sum += f;
+			g_sum += g;
+			fg_sum += f*g;
+			f2_sum += f*f;
+			g2_sum += g*g;
 		}
+	}
+	
+	/**
+	 * Adds the points (f[i], g[i]) for i in [from, to).
+	 */
+	public void add(double[] f, double[] g, int from, int to) {
+		for (int i = from; i < to; i++)
+			add(f[i], g[i]);
+	}
+	
+	/**
+	 * Calculates the regression of the points added so far.
+	 */
+	public void solve() {
+		
+		double f_avg = (n == 0) ? 0 : f_sum/n;
+		double g_avg = (n == 0) ? 0 : g_sum/n;
+		double fg_avg = (n == 0) ? 0 : fg_sum/n;
+		double f2_avg = (n == 0) ? 0 : f2_sum/n;
+		double g2_avg = (n == 0) ? 0 : g2_sum/n;
 		
+		m = (fg_avg - f_avg*g_avg)/(f2_avg - f_avg*f_avg);
+		b = g_avg - m*f_avg;
+		R2 = ((fg_avg - f_avg*g_avg)*(fg_avg - f_avg*g_avg))/
+			 ((f2_avg - f_avg*f_avg)*(g2_avg - g_avg*g_avg));
+	}
+	
 	
 /*********************
  * Getters & Setters *
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import edu.emory.physics.surfdep.utils.EmbeddedDBArray.DBOperationCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * MappedDoubleArray.java
+ * 
+ * A {@link DoubleSeries} backed by a file mapped into memory
+ * in fixed-size segments. Values are read and written in
+ * place, and the OS page cache decides what stays resident,
+ * so there is no explicit paging: records beyond the mapped
+ * segments just map the next segment, extending the file.
+ * The file is sparse until written and is deleted on exit.
+ * 
+ * @author Tyler Parsons
+ */
+public class MappedDoubleArray implements DoubleSeries {
+
+	/**
+	 * Doubles per mapped segment (128MB), well within the
+	 * 2^31 byte limit of a single mapping.
+	 */
+	public final static int SEGMENT_SIZE = 1 << 24;
+	
+	private final static int SEGMENT_BYTES = SEGMENT_SIZE*Double.BYTES;
+	
+	/**
+	 * Values copied out of the mapping per block
+	 * handed to a {@link DoubleSeries.RangeConsumer}.
+	 */
+	private final static int BLOCK_SIZE = 1 << 12;
+	
+	private File file;
+	private FileChannel channel;
+	
+	/**
+	 * Mapped segments, in order, and a double view of each.
+	 */
+	private ArrayList<MappedByteBuffer> segments;
+	private ArrayList<DoubleBuffer> views;
+	
+	/**
+	 * The segment being recorded to.
+	 */
+	private DoubleBuffer current;
+	
+	private long recordsAdded;
+	
+	private DBOperationCallback pushCallback;
+	private DBOperationCallback pullCallback;
+	
+	/**
+	 * Creates a series in a new temporary file in directory.
+	 * @param directory	parent directory, or null for the
+	 * 					default temporary-file directory
+	 */
+	public MappedDoubleArray(File directory) {
+		try {
+			file = File.createTempFile("series", ".dat", directory);
+			file.deleteOnExit();
+			channel = new RandomAccessFile(file, "rw").getChannel();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		segments = new ArrayList<MappedByteBuffer>();
+		views = new ArrayList<DoubleBuffer>();
+		recordsAdded = 0L;
+	}
+	
+	@Override
+	public void record(double value) {
+		int offset = (int)(recordsAdded & (SEGMENT_SIZE - 1));
+		if (offset == 0)
+			current = segment((int)(recordsAdded/SEGMENT_SIZE));
+		current.put(offset, value);
+		recordsAdded++;
+	}
+	
+	@Override
+	public double get(long index) {
+		if (index < 0)
+			throw new IndexOutOfBoundsException("Index "+index);
+		if (index >= recordsAdded)
+			return 0;
+		return views.get((int)(index/SEGMENT_SIZE)).get((int)(index & (SEGMENT_SIZE - 1)));
+	}
+	
+	@Override
+	public void recordAll(double[] src, int n) {
+		int i = 0;
+		while (i < n) {
+			int offset = (int)(recordsAdded & (SEGMENT_SIZE - 1));
+			if (offset == 0)
+				current = segment((int)(recordsAdded/SEGMENT_SIZE));
+			int length = Math.min(n - i, SEGMENT_SIZE - offset);
+			DoubleBuffer view = current.duplicate();
+			view.position(offset);
+			view.put(src, i, length);
+			recordsAdded += length;
+			i += length;
+		}
+	}
+	
+	@Override
+	public void getRange(long from, long to, double[] dst) {
+		copy(from, to, dst, 0);
+	}
+	
+	@Override
+	public void forEachRange(long from, long to, RangeConsumer consumer) {
+		double[] block = new double[(int)Math.min(BLOCK_SIZE, Math.max(0L, to - from))];
+		for (long index = from; index < to; index += block.length) {
+			int length = (int)Math.min(block.length, to - index);
+			copy(index, index + length, block, 0);
+			consumer.accept(index, block, 0, length);
+		}
+	}
+	
+	/**
+	 * Copies indices from (inclusive) to to (exclusive)
+	 * into dst, starting at position, and zeros for any
+	 * indices not recorded.
+	 */
+	private void copy(long from, long to, double[] dst, int position) {
+		if (from < 0)
+			throw new IndexOutOfBoundsException("Index "+from);
+		if (to > recordsAdded) {
+			int recorded = (int)Math.max(0L, recordsAdded - from);
+			Arrays.fill(dst, position + recorded, position + (int)(to - from), 0);
+			to = Math.max(from, recordsAdded);
+		}
+		while (from < to) {
+			int offset = (int)(from & (SEGMENT_SIZE - 1));
+			int length = (int)Math.min(to - from, SEGMENT_SIZE - offset);
+			DoubleBuffer view = views.get((int)(from/SEGMENT_SIZE)).duplicate();
+			view.position(offset);
+			view.get(dst, position, length);
+			position += length;
+			from += length;
+		}
+	}
+	
+	@Override
+	public long size() {
+		return recordsAdded;
+	}
+	
+	/**
+	 * Forces every mapped segment to the file. Not needed
+	 * for reads through this series, only for the file to
+	 * survive a crash of the OS.
+	 */
+	@Override
+	public void save() {
+		
+		// Invoke opStart callback
+		if (pushCallback != null)
+			pushCallback.onOperationStarted();
+		long start = System.currentTimeMillis();
+		
+		for (MappedByteBuffer segment: segments)
+			segment.force();
+		
+		// Invoke opCompleted callback
+		long opTime = System.currentTimeMillis() - start;
+		if (pushCallback != null)
+			pushCallback.onOperationCompleted(opTime);
+	}
+	
+	/**
+	 * Unmaps the segments, then closes and deletes the file.
+	 * A mapped file cannot be deleted on Windows.
+	 */
+	@Override
+	public void delete() {
+		views.clear();
+		current = null;
+		for (MappedByteBuffer segment: segments)
+			unmap(segment);
+		segments.clear();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		// Otherwise deleted on exit
+		file.delete();
+	}
+	
+	/**
+	 * Releases a mapping now rather than when it is garbage
+	 * collected, through the cleaner of sun.misc.Unsafe. If
+	 * that is unavailable the mapping is left to the
+	 * collector. The buffer and its views must not be used
+	 * afterwards.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class)
+					.invoke(theUnsafe.get(null), buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java 8, or access denied
+		}
+	}
+	
+	/**
+	 * Maps segments up to and including index.
+	 */
+	private DoubleBuffer segment(int index) {
+		try {
+			while (segments.size() <= index) {
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+						((long)segments.size())*SEGMENT_BYTES, SEGMENT_BYTES);
+				segment.order(ByteOrder.nativeOrder());
+				segments.add(segment);
+				views.add(segment.asDoubleBuffer());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return views.get(index);
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	
+/********************
+ * Nested Callbacks *
+ ********************/
+	
+	@Override
+	public void registerPushCallback(DBOperationCallback callback) {
+		pushCallback = callback;
+	}
+	
+	/**
+	 * Never invoked, since reads are served by the OS.
+	 */
+	@Override
+	public void registerPullCallback(DBOperationCallback callback) {
+		pullCallback = callback;
+	}
+	
+}
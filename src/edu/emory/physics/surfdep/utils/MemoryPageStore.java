@@ -0,0 +1,53 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MemoryPageStore.java
+ * 
+ * Keeps encoded chunks on the heap. Pages evicted from an
+ * {@link EmbeddedDBArray} cache stay compressed, so this
+ * suits runs whose encoded series fits in memory.
+ * 
+ * @author Tyler Parsons
+ */
+public class MemoryPageStore implements PageStore {
+
+	private ConcurrentHashMap<Long, byte[]> chunks = new ConcurrentHashMap<Long, byte[]>();
+	
+	@Override
+	public void clear() {
+		chunks.clear();
+	}
+
+	@Override
+	public void writeChunks(long first, int codec, int[] n, byte[][] data) {
+		for (int i = 0; i < data.length; i++)
+			chunks.put(first + i, data[i]);
+	}
+
+	@Override
+	public void readChunks(long first, int count, ChunkReader reader) {
+		for (long chunk = first; chunk < first + count; chunk++) {
+			byte[] data = chunks.get(chunk);
+			if (data != null)
+				reader.read(chunk, data);
+		}
+	}
+	
+}
@@ -15,6 +15,8 @@
  */
 package edu.emory.physics.surfdep.utils;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -31,6 +33,7 @@ import java.util.HashMap;
 public class ModelGroupIdentifier {
 
 	protected String sqlWhereClause;
+	protected Object[] sqlParameters;
 	protected HashMap<String, String> inputParams;
 	
 	/**
@@ -41,14 +44,19 @@ public class ModelGroupIdentifier {
 	 */
 	public ModelGroupIdentifier(HashMap<String, String> params) throws IllegalArgumentException {
 		inputParams = params;
-		sqlWhereClause = genSqlWhereClause(inputParams);
+		ArrayList<Object> values = new ArrayList<Object>();
+		sqlWhereClause = genSqlWhereClause(inputParams, values);
+		sqlParameters = values.toArray();
 	}
 	
 	/**
 	 * Creates a sqlWhereClause from a comma delimited
-	 * list of dashed ranges for each model field.
+	 * list of dashed ranges for each model field, with
+	 * a ? in place of each number.
+	 * @param values	receives the numbers, in order
 	 */
-	public static String genSqlWhereClause(HashMap<String, String> inputParams) throws IllegalArgumentException {
+	public static String genSqlWhereClause(HashMap<String, String> inputParams,
+			ArrayList<Object> values) throws IllegalArgumentException {
 		
 		String sql = "";
 		
@@ -65,7 +73,9 @@ public class ModelGroupIdentifier {
 				String[] limits = range.split("-");
 				
 				if (limits.length == 2) {
-					sql += "("+key+" BETWEEN "+limits[0]+" AND "+limits[1]+") OR ";
+					sql += "("+key+" BETWEEN ? AND ?) OR ";
+					values.add(parseLimit(limits[0]));
+					values.add(parseLimit(limits[1]));
 				}
 				else if (limits.length == 1) {
 					
@@ -74,7 +84,8 @@ public class ModelGroupIdentifier {
 						continue;
 					}
 					
-					sql += key+"="+limits[0]+" OR ";
+					sql += key+"=? OR ";
+					values.add(parseLimit(limits[0]));
 				}
 				else {
 					throw new IllegalArgumentException("Invalid range entered");
@@ -108,10 +119,30 @@ public class ModelGroupIdentifier {
 		
 	}
 	
+	/**
+	 * Parses a limit exactly, so that it compares
+	 * equal to the same decimal in the db.
+	 */
+	private static BigDecimal parseLimit(String limit) throws IllegalArgumentException {
+		try {
+			return new BigDecimal(limit.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid range entered");
+		}
+	}
+	
 	public String sqlWhereClause() {
 		return sqlWhereClause;
 	}
 	
+	/**
+	 * @return values bound to the parameters of
+	 * 			{@link #sqlWhereClause()}, in order
+	 */
+	public Object[] sqlParameters() {
+		return sqlParameters;
+	}
+	
 	public HashMap<String, String> getInputParams() {
 		return inputParams;
 	}
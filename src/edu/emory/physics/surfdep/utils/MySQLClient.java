@@ -15,67 +15,211 @@
  */
 package edu.emory.physics.surfdep.utils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * MySQLClient.java
+ * 
+ * Runs statements against a MySQL database on connections
+ * leased from a {@link ConnectionPool}, so that threads
+ * use the database in parallel. There is one client, and
+ * one pool, per database and set of credentials.
+ * 
+ * @author Tyler Parsons
+ */
 public class MySQLClient extends SQLClient {
 
 	private final static String driver = "com.mysql.jdbc.Driver";
 	private final static String host = "jdbc:mysql://localhost/";
 	
-	private static MySQLClient singleton;
+	private static HashMap<String, MySQLClient> clients = new HashMap<String, MySQLClient>();
 	
-	private MySQLClient(String db, String user, String pass) {
-		
-		super(host+db+"?user="+user+"&password="+pass, driver);
+	private static RowSetFactory rowSets;
 	
+	/**
+	 * Rows fetched per round trip by a {@link Cursor}.
+	 */
+	public final static int DEFAULT_FETCH_SIZE = 4096;
+	
+	/**
+	 * Chunks fetched per round trip, each up to
+	 * {@link EmbeddedDBArray#CHUNK_SIZE} encoded values.
+	 */
+	final static int CHUNK_FETCH_SIZE = 16;
+	
+	private final ConnectionPool pool;
+	
+	private MySQLClient(String url) {
+		pool = new ConnectionPool(url, driver, ConnectionPool.DEFAULT_MAX_SIZE);
 	}
 	
-	public static MySQLClient getSingleton(String db, String user, String pass) {
-		if (singleton == null) {
-			singleton = new MySQLClient(db, user, pass);
+	/**
+	 * Returns the client for db with the given credentials,
+	 * creating it the first time they are used.
+	 */
+	public static synchronized MySQLClient getClient(String db, String user, String pass) {
+		
+		// Cursor fetch lets streamed results coexist with other statements,
+		// server-side prepared statements are parsed once per connection
+		String url = host+db+"?user="+user+"&password="+pass+"&useCursorFetch=true"
+				+"&allowLoadLocalInfile=true&useServerPrepStmts=true";
+		
+		MySQLClient client = clients.get(url);
+		if (client == null) {
+			client = new MySQLClient(url);
+			clients.put(url, client);
 		}
-		return singleton;
+		return client;
 	}
 	
 	/**
-	 * Executes an SQL statement.
-	 * @param sql An SQL statement
+	 * @return the pool of this client's connections, which
+	 * 			reports how they are used
 	 */
-	public void exec(String sql) {
+	public ConnectionPool getPool() {
+		return pool;
+	}
+	
+	/**
+	 * Executes an SQL statement through the statement cache
+	 * of a leased connection.
+	 * @param sql An SQL statement, with a ? for each parameter
+	 * @param params values bound to the parameters, in order
+	 * @return number of rows changed, or -1 on failure
+	 */
+	public int exec(String sql, Object... params) {
 		
-		try {
-			Statement stmt = mConnection.createStatement();
-			stmt.execute(sql);
-			stmt.close();
+		try (ConnectionPool.Lease lease = pool.lease()) {
+			PreparedStatement stmt = lease.getStatements().prepare(sql);
+			bind(stmt, params);
+			stmt.execute();
+			return stmt.getUpdateCount();
 		}
 		catch (SQLException sqle) {
 			sqle.printStackTrace();
+			return -1;
 		}
 		
 	}
 	
 	/**
-	 * Executes an SQL query.
-	 * @param sql An SQL statement
+	 * Executes SQL statements in order as one transaction,
+	 * through the statement cache of a leased connection.
+	 * If any fails, none of them take effect, since an
+	 * uncommitted lease is rolled back when released.
+	 * @param sql		SQL statements, with a ? for each parameter
+	 * @param params	values bound to the parameters of each
+	 * 					statement, in order
+	 * @throws SQLException if a statement or the commit fails
+	 */
+	public void execAll(List<String> sql, List<Object[]> params) throws SQLException {
+		
+		try (ConnectionPool.Lease lease = pool.lease()) {
+			
+			lease.getConnection().setAutoCommit(false);
+			for (int i = 0; i < sql.size(); i++) {
+				PreparedStatement stmt = lease.getStatements().prepare(sql.get(i));
+				bind(stmt, params.get(i));
+				stmt.execute();
+			}
+			lease.getConnection().commit();
+			lease.getConnection().setAutoCommit(true);
+		}
+		
+	}
+	
+	/**
+	 * Executes an SQL query through the statement cache of a
+	 * leased connection. The results are read into memory, so
+	 * they stay valid once the connection is returned.
+	 * @param sql An SQL statement, with a ? for each parameter
+	 * @param params values bound to the parameters, in order
 	 * @return ResultSet or null
 	 */
-	public ResultSet query(String sql) {
+	public ResultSet query(String sql, Object... params) {
+		
+		try (ConnectionPool.Lease lease = pool.lease()) {
+			PreparedStatement stmt = lease.getStatements().prepare(sql);
+			bind(stmt, params);
+			try (ResultSet results = stmt.executeQuery()) {
+				CachedRowSet rows = rowSetFactory().createCachedRowSet();
+				rows.populate(results);
+				return rows;
+			}
+		}
+		catch (SQLException sqle) {
+			sqle.printStackTrace();
+			return null;
+		}
+		
+	}
+	
+	private static synchronized RowSetFactory rowSetFactory() throws SQLException {
+		if (rowSets == null)
+			rowSets = RowSetProvider.newFactory();
+		return rowSets;
+	}
+	
+	/**
+	 * Executes an SQL query, streaming its results.
+	 * @param sql An SQL statement, with a ? for each parameter
+	 * @param params values bound to the parameters, in order
+	 * @return Cursor or null
+	 */
+	public Cursor stream(String sql, Object... params) {
+		return stream(sql, DEFAULT_FETCH_SIZE, params);
+	}
+	
+	/**
+	 * Executes an SQL query through a server-side cursor,
+	 * holding at most fetchSize rows in memory at a time.
+	 * The cursor owns its statement, which is not cached.
+	 * @param sql An SQL statement, with a ? for each parameter
+	 * @param fetchSize rows fetched per round trip
+	 * @param params values bound to the parameters, in order
+	 * @return Cursor or null
+	 */
+	public Cursor stream(String sql, int fetchSize, Object... params) {
 		
+		ConnectionPool.Lease lease = null;
 		try {
-			Statement stmt = mConnection.createStatement();
-			ResultSet rs = stmt.executeQuery(sql);
-			return rs;
+			lease = pool.lease();
+			PreparedStatement stmt = prepareStreaming(lease, sql, fetchSize);
+			bind(stmt, params);
+			return new Cursor(stmt, stmt.executeQuery(), lease);
 		}
 		catch (SQLException sqle) {
 			sqle.printStackTrace();
+			if (lease != null)
+				lease.close();
 			return null;
 		}
 		
 	}
 	
+	private static PreparedStatement prepareStreaming(ConnectionPool.Lease lease,
+			String sql, int fetchSize) throws SQLException {
+		PreparedStatement stmt = lease.getConnection().prepareStatement(
+				sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(fetchSize);
+		return stmt;
+	}
+	
 	/**
 	 * Updates a table or inserts a new row if there are no matching rows.
 	 * 
@@ -84,9 +228,9 @@ public class MySQLClient extends SQLClient {
 	 */
 	public void update(String table, String setClause, String whereClause) {
 		
-		try {
+		try (ConnectionPool.Lease lease = pool.lease()) {
 
-			Statement stmt = mConnection.createStatement();
+			Statement stmt = lease.getConnection().createStatement();
 			String updateStmt = "UPDATE "+table+" SET "+setClause+" WHERE "+whereClause;
 			
 			// Insert new record if update is unsuccessful
@@ -116,6 +260,7 @@ public class MySQLClient extends SQLClient {
 					"VALUES " + values.substring(0, values.length() - 1)
 				);
 			}
+			stmt.close();
 			
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -127,92 +272,151 @@ public class MySQLClient extends SQLClient {
  * Width Table Manipulation *
  ****************************/
 	
-	public void clearWidthTable() {
-		
-		try {
-			
-			// Create width table
-			Statement stmt = mConnection.createStatement();
-			stmt.executeUpdate("DELETE FROM width WHERE 1;");
-			stmt.close();
-			
-		}
-		catch (SQLException e) {e.printStackTrace();}
-		
+	/**
+	 * Deletes the width chunks of one series.
+	 */
+	public void clearWidthChunks(int series) {
+		exec("DELETE FROM width_chunks WHERE series = ?", series);
 	}
 	
-	public void addWidthRecords(double[] vals) {
-	
-		long start = System.currentTimeMillis();
-	
-		try {
-	
-			// Add the value for width at the specified time
-			PreparedStatement stmt = mConnection.prepareStatement(
-				"INSERT INTO width (w) VALUES (?)"
-			);
-			// Disable auto commit for batch insert
-			mConnection.setAutoCommit(false);
+	/**
+	 * Stores chunks first ... first + data.length - 1 of a
+	 * series of width records, encoded by a {@link DoubleCodec},
+	 * in one batch, replacing any earlier copies.
+	 * @param series	id of the series
+	 * @param first		index of the first chunk
+	 * @param codec		codec type, see {@link DoubleCodecFactory}
+	 * @param n			number of records encoded in each chunk
+	 */
+	public void addWidthChunks(int series, long first, int codec, int[] n, byte[][] data) {
+		
+		try (ConnectionPool.Lease lease = pool.lease()) {
 			
-			int i;
-			for (i = 0; i < vals.length; i++) {
+			PreparedStatement stmt = lease.getStatements().prepare(
+				"REPLACE INTO width_chunks (series, chunk, codec, n, data) VALUES (?, ?, ?, ?, ?)"
+			);
+			// Disable auto commit for batch insert, on this connection only
+			lease.getConnection().setAutoCommit(false);
 			
-				stmt.setDouble(1, vals[i]);
+			for (int i = 0; i < data.length; i++) {
+				stmt.setInt(1, series);
+				stmt.setLong(2, first + i);
+				stmt.setInt(3, codec);
+				stmt.setInt(4, n[i]);
+				stmt.setBytes(5, data[i]);
 				stmt.addBatch();
-				
-				if (i % BATCH_SIZE == 0)
-					stmt.executeBatch();
-				
 			}
-			
-			// Execute remaining batches
-			if ((i-1) % BATCH_SIZE != 0)
-				stmt.executeBatch();
+			stmt.executeBatch();
 			
 			// Reset auto commit
-			mConnection.setAutoCommit(true);
-			
-			// Suggest Garbage Collection
-			stmt = null;
-			System.gc();
+			lease.getConnection().setAutoCommit(true);
 			
 		} catch (SQLException e) {
 			e.printStackTrace();
-		} catch (OutOfMemoryError e) {
+		}
+		
+	}
+	
+	/**
+	 * Stores chunks like {@link #addWidthChunks}, but stages them
+	 * in a local file, which the server loads in one statement.
+	 * Requires local_infile to be enabled on the server.
+	 */
+	public void loadWidthChunks(int series, long first, int codec, int[] n, byte[][] data) {
+		
+		File staging = null;
+		try (ConnectionPool.Lease lease = pool.lease()) {
+			
+			staging = File.createTempFile("width_chunks", ".tsv");
+			stageWidthChunks(staging, series, first, codec, n, data);
+			
+			Statement stmt = lease.getConnection().createStatement();
+			stmt.execute(
+				"LOAD DATA LOCAL INFILE '" + staging.getAbsolutePath().replace('\\', '/') + "' " +
+				"REPLACE INTO TABLE width_chunks (series, chunk, codec, n, @data) " +
+				"SET data = UNHEX(@data)"
+			);
+			stmt.close();
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (SQLException e) {
 			e.printStackTrace();
+		} finally {
+			if (staging != null)
+				staging.delete();
 		}
+		
+	}
 	
-		System.out.println(	"Added "+vals.length+" records in "
-							+(System.currentTimeMillis()-start)+"ms");
+	/**
+	 * Writes one tab-separated line per chunk to file, with
+	 * the encoded data in hex, through a direct buffer.
+	 */
+	private static void stageWidthChunks(File file, int series, long first, int codec,
+			int[] n, byte[][] data) throws IOException {
+		
+		final byte[] hex = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+		
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			
+			for (int i = 0; i < data.length; i++) {
+				
+				byte[] key = (series+"\t"+(first + i)+"\t"+codec+"\t"+n[i]+"\t")
+						.getBytes(StandardCharsets.US_ASCII);
+				if (buffer.remaining() < key.length) {
+					drain(buffer, channel);
+				}
+				buffer.put(key);
+				
+				for (byte b: data[i]) {
+					if (buffer.remaining() < 3)
+						drain(buffer, channel);
+					buffer.put(hex[(b >> 4) & 0xF]);
+					buffer.put(hex[b & 0xF]);
+				}
+				buffer.put((byte)'\n');
+			}
+			drain(buffer, channel);
+		}
+		
+	}
 	
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
 	}
 	
 	/**
-	 * Selects all records between the {@code from} time, inclusive,
-	 * to the {@code to} time, exclusive.
+	 * Streams chunks first ... first + count - 1 of a series
+	 * to reader, in order, skipping any never stored, so that
+	 * only a few chunks are held in memory at once.
 	 */
-	public ResultSet queryWidthRecords(long from, long to) {
+	public void queryWidthChunks(int series, long first, int count, PageStore.ChunkReader reader) {
 		
-		long start = System.currentTimeMillis();
+		Cursor chunks = stream(
+			"SELECT chunk, data FROM width_chunks " +
+			"WHERE series = ? AND chunk >= ? AND chunk < ? ORDER BY chunk",
+			CHUNK_FETCH_SIZE, new Object[] {series, first, first + count}
+		);
+		// Query failed, already reported
+		if (chunks == null)
+			return;
 		
-		try {
-	
-			// Add the value for width at the specified time
-			Statement stmt = mConnection.createStatement();
-			
-			ResultSet results = stmt.executeQuery(
-				"SELECT * FROM width WHERE t>="+from+" AND t<"+to
-			);
-			
-			System.out.println("Queried "+(to-from)+" records in "+(System.currentTimeMillis()-start)+"ms.");
+		try (Cursor cursor = chunks) {
 			
-			return results;
+			ResultSet results = cursor.getResultSet();
+			while (results.next())
+				reader.read(results.getLong("chunk"), results.getBytes("data"));
 			
 		} catch (SQLException e) {
 			e.printStackTrace();
-			return null;
 		}
-	
+		
 	}
 	
 }
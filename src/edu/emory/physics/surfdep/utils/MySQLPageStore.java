@@ -0,0 +1,63 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * MySQLPageStore.java
+ * 
+ * Stores chunks in the width_chunks table of the shared
+ * MySQL database, under a series id that separates them
+ * from those of other series. Pages are written either
+ * as a JDBC batch or, with bulkLoad, staged to a local
+ * file and loaded with LOAD DATA LOCAL INFILE.
+ * 
+ * @author Tyler Parsons
+ */
+public class MySQLPageStore implements PageStore {
+
+	private MySQLClient dbClient;
+	private int series;
+	private boolean bulkLoad;
+	
+	public MySQLPageStore() {
+		this(0, false);
+	}
+	
+	public MySQLPageStore(int series, boolean bulkLoad) {
+		dbClient = MySQLClient.getClient("depositions", "bdm", "d3po$ition$");
+		this.series = series;
+		this.bulkLoad = bulkLoad;
+	}
+	
+	@Override
+	public void clear() {
+		dbClient.clearWidthChunks(series);
+	}
+
+	@Override
+	public void writeChunks(long first, int codec, int[] n, byte[][] data) {
+		if (bulkLoad)
+			dbClient.loadWidthChunks(series, first, codec, n, data);
+		else
+			dbClient.addWidthChunks(series, first, codec, n, data);
+	}
+
+	@Override
+	public void readChunks(long first, int count, ChunkReader reader) {
+		dbClient.queryWidthChunks(series, first, count, reader);
+	}
+	
+}
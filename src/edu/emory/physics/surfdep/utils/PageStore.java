@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * PageStore.java
+ * 
+ * Storage for the pages of a paged double series, such
+ * as an {@link EmbeddedDBArray}. Pages are stored as runs
+ * of fixed-size chunks, each one a blob keyed by its chunk
+ * index, so that a page is written and read whole with a
+ * few thousand rows rather than one row per value.
+ * 
+ * @author Tyler Parsons
+ */
+public interface PageStore {
+
+	/**
+	 * Deletes all chunks stored by this series.
+	 */
+	public void clear();
+	
+	/**
+	 * Stores chunks first ... first + data.length - 1,
+	 * replacing any earlier copies.
+	 * @param first	index of the first chunk
+	 * @param codec	codec type, see {@link DoubleCodecFactory}
+	 * @param n		number of values encoded in each chunk
+	 * @param data	the encoded chunks
+	 */
+	public void writeChunks(long first, int codec, int[] n, byte[][] data);
+	
+	/**
+	 * Passes chunks first ... first + count - 1 to reader,
+	 * in order, skipping any that were never stored.
+	 */
+	public void readChunks(long first, int count, ChunkReader reader);
+	
+	/**
+	 * Receives chunks as they are read, so that a page can
+	 * be decoded without holding all of its chunks at once.
+	 */
+	public interface ChunkReader {
+		
+		public void read(long chunk, byte[] data);
+		
+	}
+	
+}
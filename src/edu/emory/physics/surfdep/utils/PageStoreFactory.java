@@ -0,0 +1,71 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Creates {@link PageStore}s from the numeric backend
+ * types stored in model parameters. SQLITE databases are
+ * created in the directory named by the surfdep.seriesDir
+ * system property, if set, otherwise in the default
+ * temporary-file directory.
+ * 
+ * @author Tyler Parsons
+ */
+public class PageStoreFactory {
+
+	public final static int MYSQL = 0;
+	public final static int SQLITE = 1;
+	public final static int MEMORY = 2;
+	public final static int MYSQL_BULK = 3;
+	
+	/**
+	 * @param type		backend type
+	 * @param series	id separating the pages of this series
+	 * 					from others in a shared database
+	 */
+	public PageStore createPageStore(int type, int series) {
+		if (type == MYSQL) {
+			return new MySQLPageStore(series, false);
+		}
+		else if (type == MYSQL_BULK) {
+			return new MySQLPageStore(series, true);
+		}
+		else if (type == SQLITE) {
+			String directory = System.getProperty(DoubleSeriesFactory.DIRECTORY_PROPERTY);
+			try {
+				File file = File.createTempFile("width", ".db",
+						directory != null ? new File(directory) : null);
+				file.deleteOnExit();
+				return new SQLitePageStore(file.getPath());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		else if (type == MEMORY) {
+			return new MemoryPageStore();
+		}
+		// Declare other types here
+		// ...
+		else {
+			throw new IllegalArgumentException("Unknown page store type "+type);
+		}
+	}
+	
+}
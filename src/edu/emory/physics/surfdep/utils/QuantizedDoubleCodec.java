@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * QuantizedDoubleCodec.java
+ * 
+ * Lossy encoding of values rounded to the nearest multiple
+ * of a fixed quantum. Successive multiples are stored as
+ * zigzag deltas in a prefix code of 1, 9, 18 or 67 bits,
+ * so a series changing by less than 64 quanta per step
+ * costs about a byte per value. Decoded values are within
+ * quantum/2 of those encoded.
+ * 
+ * @author Tyler Parsons
+ */
+public class QuantizedDoubleCodec implements DoubleCodec {
+
+	private final double quantum;
+	
+	public QuantizedDoubleCodec(double quantum) {
+		if (!(quantum > 0))
+			throw new IllegalArgumentException("Quantum must be positive, was "+quantum);
+		this.quantum = quantum;
+	}
+	
+	@Override
+	public byte[] encode(double[] src, int from, int n) {
+		
+		BitStream.Writer out = new BitStream.Writer(n + 12);
+		out.write(n, 32);
+		out.writeLong(Double.doubleToRawLongBits(quantum));
+		
+		long prev = 0;
+		for (int i = from; i < from + n; i++) {
+			long q = Math.round(src[i]/quantum);
+			long delta = q - prev;
+			long zigzag = (delta << 1) ^ (delta >> 63);
+			prev = q;
+			
+			if (zigzag == 0) {
+				out.write(0b0, 1);
+			}
+			else if (zigzag < (1L << 7)) {
+				out.write(0b10, 2);
+				out.write(zigzag, 7);
+			}
+			else if (zigzag < (1L << 15)) {
+				out.write(0b110, 3);
+				out.write(zigzag, 15);
+			}
+			else {
+				out.write(0b111, 3);
+				out.writeLong(zigzag);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public int decode(byte[] data, double[] dst, int from) {
+		
+		BitStream.Reader in = new BitStream.Reader(data);
+		int n = (int)in.read(32);
+		double q = Double.longBitsToDouble(in.readLong());
+		
+		long prev = 0;
+		for (int i = from; i < from + n; i++) {
+			long zigzag;
+			if (!in.readBit())
+				zigzag = 0;
+			else if (!in.readBit())
+				zigzag = in.read(7);
+			else if (!in.readBit())
+				zigzag = in.read(15);
+			else
+				zigzag = in.readLong();
+			prev += (zigzag >>> 1) ^ -(zigzag & 1);
+			dst[i] = prev*q;
+		}
+		return n;
+	}
+	
+	@Override
+	public boolean isLossless() {
+		return false;
+	}
+	
+	public double getQuantum() {
+		return quantum;
+	}
+	
+}
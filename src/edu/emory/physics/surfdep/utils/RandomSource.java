@@ -0,0 +1,66 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * RandomSource.java
+ * 
+ * A per-model source of pseudorandom numbers. Unlike
+ * Math.random(), implementations are unsynchronized
+ * and owned by a single model or thread, and can be
+ * seeded, split and jumped ahead to provide indepen-
+ * dent, reproducible streams for each trial.
+ * 
+ * @author Tyler Parsons
+ */
+public interface RandomSource {
+
+	/**
+	 * @return the next 64 pseudorandom bits
+	 */
+	public long nextLong();
+	
+	/**
+	 * @return a uniformly distributed double in [0, 1)
+	 */
+	public double nextDouble();
+	
+	/**
+	 * @return a uniformly distributed int in [0, bound)
+	 */
+	public int nextInt(int bound);
+	
+	/**
+	 * Fills the first n elements of dst with uniformly
+	 * distributed ints in [0, bound).
+	 */
+	public void nextInts(int[] dst, int n, int bound);
+	
+	/**
+	 * Advances this source past a fixed, very large number
+	 * of outputs. Successive jumps partition a single seed
+	 * into non-overlapping streams.
+	 */
+	public void jump();
+	
+	/**
+	 * Returns a new source positioned at the current state
+	 * of this one, and jumps this source ahead so that the
+	 * two streams do not overlap.
+	 */
+	public RandomSource split();
+	
+}
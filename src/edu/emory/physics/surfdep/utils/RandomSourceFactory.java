@@ -0,0 +1,57 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * Creates {@link RandomSource}s from the numeric
+ * generator types stored in model parameters.
+ * 
+ * @author Tyler Parsons
+ */
+public class RandomSourceFactory {
+
+	public final static int XOROSHIRO128PLUS = 0;
+	public final static int SPLITMIX64 = 1;
+	
+	/**
+	 * Largest seed that survives storage as a Double
+	 * model parameter without loss of precision.
+	 */
+	public final static long MAX_SEED = (1L << 53) - 1;
+	
+	public RandomSource createRandomSource(int type, long seed) {
+		if (type == XOROSHIRO128PLUS) {
+			return new Xoroshiro128Plus(seed);
+		}
+		else if (type == SPLITMIX64) {
+			return new SplitMix64(seed);
+		}
+		// Declare other types here
+		// ...
+		else {
+			throw new IllegalArgumentException("Unknown generator type "+type);
+		}
+	}
+	
+	/**
+	 * Generates a nonzero seed in [1, MAX_SEED].
+	 */
+	public static long generateSeed() {
+		long seed = new SplitMix64(System.nanoTime()).nextLong() & MAX_SEED;
+		return seed != 0 ? seed : 1;
+	}
+	
+}
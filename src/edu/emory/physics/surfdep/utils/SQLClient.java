@@ -17,7 +17,9 @@ package edu.emory.physics.surfdep.utils;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
 
 public class SQLClient {
 	
@@ -26,6 +28,13 @@ public class SQLClient {
 	protected int BATCH_SIZE = 1024;
 	
 	
+	/**
+	 * For clients that lease connections from a
+	 * {@link ConnectionPool} rather than holding one.
+	 */
+	protected SQLClient() {
+	}
+	
 	protected SQLClient(String connectionUrl, String driver) {
 	
 		try {
@@ -43,8 +52,25 @@ public class SQLClient {
 	
 
 	protected void finalize() throws Throwable {
-		mConnection.close();
+		if (mConnection != null)
+			mConnection.close();
 		super.finalize();
 	}
 	
+	/**
+	 * Binds params to the parameters of stmt, in order.
+	 * Null and non-finite values are bound as SQL NULL.
+	 */
+	protected static void bind(PreparedStatement stmt, Object... params) throws SQLException {
+		for (int i = 0; i < params.length; i++) {
+			Object p = params[i];
+			if (p == null)
+				stmt.setNull(i + 1, Types.NULL);
+			else if (p instanceof Double && (((Double)p).isNaN() || ((Double)p).isInfinite()))
+				stmt.setNull(i + 1, Types.DOUBLE);
+			else
+				stmt.setObject(i + 1, p);
+		}
+	}
+	
 }
@@ -20,7 +20,11 @@ import java.lang.Throwable;
 import java.sql.*;
 
 /**
- * @deprecated
+ * Embedded SQLite database, used as a {@link PageStore}
+ * through {@link SQLitePageStore}. The database is opened
+ * in WAL mode, so page writes append to the log rather
+ * than rewriting the file.
+ * 
  * @author Tyler
  */
 public class SQLiteClient extends SQLClient {
@@ -45,13 +49,27 @@ public class SQLiteClient extends SQLClient {
 				")"
 			);			
 			
+			// Create chunk table, written by whole pages
+			stmt.executeUpdate("DROP TABLE IF EXISTS width_chunks");
+			stmt.executeUpdate(
+				"CREATE TABLE width_chunks (" +
+					"chunk INTEGER PRIMARY KEY," +
+					"codec INTEGER," +
+					"n INTEGER," +
+					"data BLOB" +
+				")"
+			);
+			stmt.execute("PRAGMA journal_mode=WAL");
+			stmt.execute("PRAGMA synchronous=NORMAL");
+			stmt.close();
+			
 		}
 		catch (SQLException e) {e.printStackTrace();}
 	
 	}
 	
 	public void deleteDb() {
-		File db = new File(".\\"+dbUrl);
+		File db = new File(dbUrl);
 		db.delete();
 	}
 	
@@ -147,6 +165,74 @@ public class SQLiteClient extends SQLClient {
 	
 	}
 	
+	public void clearChunks() {
+		
+		try {
+			
+			Statement stmt = mConnection.createStatement();
+			stmt.executeUpdate("DELETE FROM width_chunks");
+			stmt.close();
+			
+		}
+		catch (SQLException e) {e.printStackTrace();}
+		
+	}
+	
+	/**
+	 * Stores encoded chunks first ... first + data.length - 1
+	 * in a single transaction, replacing any earlier copies.
+	 */
+	public void addChunks(long first, int codec, int[] n, byte[][] data) {
+		
+		try {
+			
+			PreparedStatement stmt = mConnection.prepareStatement(
+				"INSERT OR REPLACE INTO width_chunks (chunk, codec, n, data) VALUES (?, ?, ?, ?)"
+			);
+			mConnection.setAutoCommit(false);
+			for (int i = 0; i < data.length; i++) {
+				stmt.setLong(1, first + i);
+				stmt.setInt(2, codec);
+				stmt.setInt(3, n[i]);
+				stmt.setBytes(4, data[i]);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+			mConnection.commit();
+			mConnection.setAutoCommit(true);
+			stmt.close();
+			
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/**
+	 * Passes encoded chunks first ... first + count - 1 to
+	 * reader, in order, as they are stepped through.
+	 */
+	public void queryChunks(long first, int count, PageStore.ChunkReader reader) {
+		
+		try {
+			
+			PreparedStatement stmt = mConnection.prepareStatement(
+				"SELECT chunk, data FROM width_chunks WHERE chunk >= ? AND chunk < ? ORDER BY chunk"
+			);
+			stmt.setLong(1, first);
+			stmt.setLong(2, first + count);
+			ResultSet results = stmt.executeQuery();
+			while (results.next())
+				reader.read(results.getLong("chunk"), results.getBytes("data"));
+			results.close();
+			stmt.close();
+			
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
 	protected void finalize() throws Throwable {
 		super.finalize();
 		deleteDb();
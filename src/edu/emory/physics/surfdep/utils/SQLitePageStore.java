@@ -0,0 +1,53 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * SQLitePageStore.java
+ * 
+ * Stores pages in an embedded SQLite database file, with
+ * no server round trips. The file is deleted once the
+ * store is no longer referenced.
+ * 
+ * @author Tyler Parsons
+ */
+public class SQLitePageStore implements PageStore {
+
+	private SQLiteClient dbClient;
+	
+	/**
+	 * @param dbUrl	path of the database file
+	 */
+	public SQLitePageStore(String dbUrl) {
+		dbClient = new SQLiteClient(dbUrl);
+	}
+	
+	@Override
+	public void clear() {
+		dbClient.clearChunks();
+	}
+
+	@Override
+	public void writeChunks(long first, int codec, int[] n, byte[][] data) {
+		dbClient.addChunks(first, codec, n, data);
+	}
+
+	@Override
+	public void readChunks(long first, int count, ChunkReader reader) {
+		dbClient.queryChunks(first, count, reader);
+	}
+	
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * ScalarReductions.java
+ * 
+ * Plain single-accumulator loops. Used as the fallback
+ * and as the reference for the other implementations.
+ * 
+ * @author Tyler Parsons
+ */
+public class ScalarReductions implements SurfaceReductions {
+
+	@Override
+	public long sum(int[] a, int from, int to) {
+		long sum = 0;
+		for (int i = from; i < to; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	@Override
+	public long sumOfSquares(int[] a, int from, int to) {
+		long sum = 0;
+		for (int i = from; i < to; i++)
+			sum += (long)a[i]*a[i];
+		return sum;
+	}
+
+	@Override
+	public int min(int[] a, int from, int to) {
+		checkNonempty(from, to);
+		int min = a[from];
+		for (int i = from + 1; i < to; i++)
+			if (a[i] < min)
+				min = a[i];
+		return min;
+	}
+
+	@Override
+	public int max(int[] a, int from, int to) {
+		checkNonempty(from, to);
+		int max = a[from];
+		for (int i = from + 1; i < to; i++)
+			if (a[i] > max)
+				max = a[i];
+		return max;
+	}
+	
+	private static void checkNonempty(int from, int to) {
+		if (from >= to)
+			throw new IllegalArgumentException("Empty range ["+from+", "+to+")");
+	}
+	
+}
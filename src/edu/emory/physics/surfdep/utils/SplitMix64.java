@@ -0,0 +1,85 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * SplitMix64.java
+ * 
+ * The generator underlying java.util.SplittableRandom,
+ * without its synchronization-free but allocation-heavy
+ * stream API. jump() advances the state by 2^48 outputs.
+ * 
+ * @author Tyler Parsons
+ */
+public class SplitMix64 implements RandomSource {
+
+	private final static long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	private long state;
+	private final long gamma;
+	
+	public SplitMix64(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+	
+	private SplitMix64(long seed, long gamma) {
+		this.state = seed;
+		this.gamma = gamma;
+	}
+	
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	@Override
+	public long nextLong() {
+		return mix64(state += gamma);
+	}
+	
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	@Override
+	public int nextInt(int bound) {
+		return (int)(((nextLong() >>> 32) * bound) >>> 32);
+	}
+	
+	@Override
+	public void nextInts(int[] dst, int n, int bound) {
+		long s = state;
+		for (int i = 0; i < n; i++) {
+			dst[i] = (int)(((mix64(s += gamma) >>> 32) * bound) >>> 32);
+		}
+		state = s;
+	}
+	
+	@Override
+	public void jump() {
+		state += gamma << 48;
+	}
+	
+	@Override
+	public RandomSource split() {
+		SplitMix64 child = new SplitMix64(state, gamma);
+		jump();
+		return child;
+	}
+	
+}
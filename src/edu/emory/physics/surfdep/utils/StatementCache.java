@@ -0,0 +1,108 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * StatementCache.java
+ * 
+ * A bounded cache of the PreparedStatements of one
+ * connection, keyed by SQL, so that statements run
+ * repeatedly are parsed and planned once. The least
+ * recently used statement is closed once the cache is
+ * full. Not thread-safe: callers lock the cache while
+ * binding and executing its statements.
+ * 
+ * @author Tyler Parsons
+ */
+public class StatementCache {
+
+	public final static int DEFAULT_CAPACITY = 64;
+	
+	private final Connection connection;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+	
+	private long hits;
+	private long misses;
+	
+	public StatementCache(Connection connection) {
+		this(connection, DEFAULT_CAPACITY);
+	}
+	
+	public StatementCache(Connection connection, final int capacity) {
+		this.connection = connection;
+		statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= capacity)
+					return false;
+				close(eldest.getValue());
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cached statement for sql, preparing it
+	 * if it is not cached. Its parameters are cleared.
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt != null) {
+			hits++;
+			stmt.clearParameters();
+			return stmt;
+		}
+		misses++;
+		
+		stmt = connection.prepareStatement(sql);
+		statements.put(sql, stmt);
+		return stmt;
+	}
+	
+	/**
+	 * Closes and forgets every cached statement.
+	 */
+	public void close() {
+		for (PreparedStatement stmt: statements.values())
+			close(stmt);
+		statements.clear();
+	}
+	
+	private static void close(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+	
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * SurfaceReductions.java
+ * 
+ * Full-surface reductions over a height array, used for
+ * rescanning the surface and any moment calculations.
+ * Each method reduces a[from] ... a[to - 1].
+ * 
+ * @author Tyler Parsons
+ */
+public interface SurfaceReductions {
+
+	/**
+	 * @return the sum of the elements in range
+	 */
+	public long sum(int[] a, int from, int to);
+	
+	/**
+	 * @return the sum of the squares of the elements in range
+	 */
+	public long sumOfSquares(int[] a, int from, int to);
+	
+	/**
+	 * @return the smallest element in range
+	 * @throws IllegalArgumentException if the range is empty
+	 */
+	public int min(int[] a, int from, int to);
+	
+	/**
+	 * @return the largest element in range
+	 * @throws IllegalArgumentException if the range is empty
+	 */
+	public int max(int[] a, int from, int to);
+	
+}
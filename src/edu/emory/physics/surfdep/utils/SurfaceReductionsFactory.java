@@ -0,0 +1,82 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * Creates {@link SurfaceReductions} from numeric types. The
+ * implementation used by the models is chosen once at startup:
+ * the surfdep.reductions system property if set, e.g.
+ * 		java -Dsurfdep.reductions=0 ...
+ * to force the scalar loops, otherwise VECTOR when the
+ * jdk.incubator.vector module and the VectorReductions class,
+ * built from the src-vector source root, are present, and
+ * SCALAR if not.
+ * 
+ * @author Tyler Parsons
+ */
+public class SurfaceReductionsFactory {
+
+	public final static int SCALAR = 0;
+	public final static int VECTOR = 1;
+	
+	public final static String PROPERTY = "surfdep.reductions";
+	
+	private final static String VECTOR_CLASS = "edu.emory.physics.surfdep.utils.VectorReductions";
+	
+	private final static SurfaceReductions DEFAULT = selectDefault();
+	
+	public SurfaceReductions createSurfaceReductions(int type) {
+		if (type == SCALAR) {
+			return new ScalarReductions();
+		}
+		else if (type == VECTOR) {
+			// Loaded by name so that nothing else links
+			// against the incubator module
+			try {
+				return (SurfaceReductions)Class.forName(VECTOR_CLASS)
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				throw new UnsupportedOperationException(
+						"Vector API unavailable, run with --add-modules jdk.incubator.vector", e);
+			}
+		}
+		// Declare other types here
+		// ...
+		else {
+			throw new IllegalArgumentException("Unknown reductions type "+type);
+		}
+	}
+	
+	/**
+	 * @return the implementation selected at startup
+	 */
+	public static SurfaceReductions getDefault() {
+		return DEFAULT;
+	}
+	
+	private static SurfaceReductions selectDefault() {
+		SurfaceReductionsFactory factory = new SurfaceReductionsFactory();
+		Integer type = Integer.getInteger(PROPERTY);
+		if (type != null)
+			return factory.createSurfaceReductions(type);
+		try {
+			return factory.createSurfaceReductions(VECTOR);
+		} catch (UnsupportedOperationException e) {
+			return factory.createSurfaceReductions(SCALAR);
+		}
+	}
+	
+}
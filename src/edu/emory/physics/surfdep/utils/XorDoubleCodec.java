@@ -0,0 +1,116 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * XorDoubleCodec.java
+ * 
+ * Lossless Gorilla-style encoding. Each value is XORed
+ * with the previous one, and only the bits that differ
+ * are stored: a single 0 bit for a repeated value, or
+ * the meaningful bits of the XOR, reusing the previous
+ * leading/trailing zero counts where they still fit.
+ * Slowly varying series such as the width cost a few
+ * bytes per value instead of eight.
+ * 
+ * @author Tyler Parsons
+ */
+public class XorDoubleCodec implements DoubleCodec {
+
+	@Override
+	public byte[] encode(double[] src, int from, int n) {
+		
+		BitStream.Writer out = new BitStream.Writer(n*2 + 4);
+		out.write(n, 32);
+		if (n == 0)
+			return out.toByteArray();
+		
+		long prev = Double.doubleToRawLongBits(round(src[from]));
+		out.writeLong(prev);
+		int prevLeading = Integer.MAX_VALUE;
+		int prevTrailing = 0;
+		
+		for (int i = from + 1; i < from + n; i++) {
+			long bits = Double.doubleToRawLongBits(round(src[i]));
+			long xor = bits ^ prev;
+			prev = bits;
+			
+			if (xor == 0) {
+				out.writeBit(false);
+				continue;
+			}
+			out.writeBit(true);
+			
+			int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+			int trailing = Long.numberOfTrailingZeros(xor);
+			if (leading >= prevLeading && trailing >= prevTrailing) {
+				// Fits in the previous window
+				out.writeBit(false);
+				out.writeWide(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+			}
+			else {
+				int significant = 64 - leading - trailing;
+				out.writeBit(true);
+				out.write(leading, 5);
+				out.write(significant - 1, 6);
+				out.writeWide(xor >>> trailing, significant);
+				prevLeading = leading;
+				prevTrailing = trailing;
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public int decode(byte[] data, double[] dst, int from) {
+		
+		BitStream.Reader in = new BitStream.Reader(data);
+		int n = (int)in.read(32);
+		if (n == 0)
+			return 0;
+		
+		long prev = in.readLong();
+		dst[from] = Double.longBitsToDouble(prev);
+		int leading = 0;
+		int trailing = 0;
+		
+		for (int i = from + 1; i < from + n; i++) {
+			if (in.readBit()) {
+				if (in.readBit()) {
+					leading = (int)in.read(5);
+					trailing = 64 - leading - ((int)in.read(6) + 1);
+				}
+				prev ^= in.readWide(64 - leading - trailing) << trailing;
+			}
+			dst[i] = Double.longBitsToDouble(prev);
+		}
+		return n;
+	}
+	
+	@Override
+	public boolean isLossless() {
+		return true;
+	}
+	
+	/**
+	 * Applied to each value before encoding, allowing
+	 * lossy subclasses to zero low-order bits.
+	 */
+	protected double round(double value) {
+		return value;
+	}
+	
+}
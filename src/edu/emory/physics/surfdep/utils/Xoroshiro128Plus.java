@@ -0,0 +1,117 @@
+/**
+ * Copyright 2015, Tyler Parsons
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.emory.physics.surfdep.utils;
+
+/**
+ * Xoroshiro128Plus.java
+ * 
+ * The xoroshiro128+ generator of Blackman and Vigna,
+ * with a period of 2^128 - 1. jump() advances the
+ * state by 2^64 outputs.
+ * 
+ * @author Tyler Parsons
+ */
+public class Xoroshiro128Plus implements RandomSource {
+
+	private final static long[] JUMP = {
+		0xdf900294d8f554a5L, 0x170865df4b3201fcL
+	};
+	
+	private long s0;
+	private long s1;
+	
+	/**
+	 * Expands seed into the 128 bit state with SplitMix64,
+	 * which guarantees the state is not all zeros.
+	 */
+	public Xoroshiro128Plus(long seed) {
+		SplitMix64 init = new SplitMix64(seed);
+		s0 = init.nextLong();
+		s1 = init.nextLong();
+		if (s0 == 0 && s1 == 0)
+			s1 = 1;
+	}
+	
+	private Xoroshiro128Plus(long s0, long s1) {
+		this.s0 = s0;
+		this.s1 = s1;
+	}
+	
+	@Override
+	public long nextLong() {
+		long a = s0;
+		long b = s1;
+		long result = a + b;
+		b ^= a;
+		s0 = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+		s1 = Long.rotateLeft(b, 37);
+		return result;
+	}
+	
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	@Override
+	public int nextInt(int bound) {
+		return (int)(((nextLong() >>> 32) * bound) >>> 32);
+	}
+	
+	/**
+	 * Keeps the state in locals for the duration of the
+	 * loop so the JIT can hold it in registers.
+	 */
+	@Override
+	public void nextInts(int[] dst, int n, int bound) {
+		long a = s0;
+		long b = s1;
+		for (int i = 0; i < n; i++) {
+			long result = a + b;
+			b ^= a;
+			a = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+			b = Long.rotateLeft(b, 37);
+			dst[i] = (int)(((result >>> 32) * bound) >>> 32);
+		}
+		s0 = a;
+		s1 = b;
+	}
+	
+	@Override
+	public void jump() {
+		long j0 = 0;
+		long j1 = 0;
+		for (long jump: JUMP) {
+			for (int b = 0; b < 64; b++) {
+				if ((jump & (1L << b)) != 0) {
+					j0 ^= s0;
+					j1 ^= s1;
+				}
+				nextLong();
+			}
+		}
+		s0 = j0;
+		s1 = j1;
+	}
+	
+	@Override
+	public RandomSource split() {
+		Xoroshiro128Plus child = new Xoroshiro128Plus(s0, s1);
+		jump();
+		return child;
+	}
+	
+}